@@ -0,0 +1,136 @@
+package edu.stevens.cs522.chat.databases;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.RoomDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.UUID;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.settings.Settings;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the database profiles on the workloads of the app: messages posted one at a time
+ * (a transaction each), a sync download applied in batches, and keyset paging through a
+ * chatroom.  Each profile is saved as the database profile setting and read back, as
+ * ChatDatabase.getInstance reads it, and gets a fresh database on disk.  Results are in the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseProfileBenchmark {
+
+    private static final String TAG = DatabaseProfileBenchmark.class.getCanonicalName();
+
+    private static final String DATABASE_NAME = "profile-benchmark.db";
+
+    private static final int POSTS = 500;
+
+    private static final int MESSAGES = 5000;
+
+    private static final int PEERS = 50;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int PAGE_SIZE = 50;
+
+    // The app id of the app under test (messages from other apps are inserted)
+    private static final UUID APP_ID = UUID.randomUUID();
+
+    private static String pragma(ChatDatabase chatDatabase, String name) {
+        try (Cursor cursor = chatDatabase.query("PRAGMA " + name, null)) {
+            cursor.moveToFirst();
+            return cursor.getString(0);
+        }
+    }
+
+    private static double perSecond(int count, long nanos) {
+        return count * 1e9 / nanos;
+    }
+
+    private void run(Context context, DatabaseProfile choice) throws Exception {
+        Settings.saveDatabaseProfile(context, choice);
+        DatabaseProfile profile = Settings.getDatabaseProfile(context);
+        assertEquals(choice, profile);
+
+        context.deleteDatabase(DATABASE_NAME);
+        ChatDatabase chatDatabase = ChatDatabase.build(context, DATABASE_NAME, profile);
+        try {
+            TestData.setUp(chatDatabase, PEERS);
+            RequestDao requestDao = chatDatabase.requestDao();
+            if (profile.journalMode == RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING) {
+                assertEquals("wal", pragma(chatDatabase, "journal_mode").toLowerCase());
+            }
+
+            /*
+             * Messages posted one at a time.
+             */
+            List<Message> posts = TestData.messages(TestData.CHATROOM, POSTS, PEERS, 0);
+            long start = System.nanoTime();
+            for (Message message : posts) {
+                requestDao.insert(message);
+            }
+            long posting = System.nanoTime() - start;
+
+            /*
+             * A sync download, applied in batches.
+             */
+            List<Message> download = TestData.messages(TestData.CHATROOM, MESSAGES, PEERS, POSTS);
+            start = System.nanoTime();
+            for (int i = 0; i < download.size(); i += BATCH_SIZE) {
+                requestDao.upsert(APP_ID, download.subList(i, Math.min(i + BATCH_SIZE, download.size())));
+            }
+            long applying = System.nanoTime() - start;
+            assertEquals(POSTS + MESSAGES, TestData.count(chatDatabase, "Message"));
+
+            /*
+             * Scrolling back through the whole chatroom, a page at a time.
+             */
+            MessageDao messageDao = chatDatabase.messageDao();
+            int pages = 0, read = 0;
+            long beforeId = Long.MAX_VALUE;
+            start = System.nanoTime();
+            List<Message> page = messageDao.fetchMessagesBefore(TestData.CHATROOM, beforeId, PAGE_SIZE).get();
+            while (!page.isEmpty()) {
+                pages++;
+                read += page.size();
+                beforeId = page.get(page.size() - 1).id;
+                page = messageDao.fetchMessagesBefore(TestData.CHATROOM, beforeId, PAGE_SIZE).get();
+            }
+            long paging = System.nanoTime() - start;
+            assertEquals(POSTS + MESSAGES, read);
+
+            Log.i(TAG, String.format("%s (journal_mode=%s, synchronous=%s, cache_size=%s): " +
+                            "%.0f posts/sec, %.0f rows/sec applied, %.0f pages/sec read",
+                    profile.name(), pragma(chatDatabase, "journal_mode"), pragma(chatDatabase, "synchronous"),
+                    pragma(chatDatabase, "cache_size"),
+                    perSecond(POSTS, posting), perSecond(MESSAGES, applying), perSecond(pages, paging)));
+        } finally {
+            chatDatabase.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void compareProfiles() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        DatabaseProfile saved = Settings.getDatabaseProfile(context);
+        try {
+            for (DatabaseProfile profile : DatabaseProfile.values()) {
+                run(context, profile);
+            }
+        } finally {
+            Settings.saveDatabaseProfile(context, saved);
+        }
+    }
+
+}
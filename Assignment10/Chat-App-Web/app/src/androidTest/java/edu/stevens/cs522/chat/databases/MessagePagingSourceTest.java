@@ -0,0 +1,213 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingSource.LoadParams;
+import androidx.paging.PagingSource.LoadResult;
+import androidx.paging.PagingState;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The keyset boundaries of the pages of a chatroom: the newest page on open, the pages before
+ * and after a message, and the window reloaded around a message after invalidation.  Also the
+ * pages of the messages from a sender, whose timestamps are not unique.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessagePagingSourceTest {
+
+    private static final String OTHER_CHATROOM = "other";
+
+    private static final int MESSAGES = 100;
+
+    private static final int PAGE_SIZE = 10;
+
+    private ChatDatabase chatDatabase;
+
+    // Primary keys of the messages in the chatroom, in order
+    private final List<Long> ids = new ArrayList<>();
+
+    @Before
+    public void openDatabase() {
+        chatDatabase = ChatDatabase.build(ApplicationProvider.getApplicationContext(), null, DatabaseProfile.DEFAULT);
+        TestData.setUp(chatDatabase, 3);
+        chatDatabase.chatroomDao().insert(new Chatroom(OTHER_CHATROOM));
+        /*
+         * Interleave messages in another chatroom, so the keys in this one are not contiguous.
+         */
+        List<Message> messages = TestData.messages(TestData.CHATROOM, MESSAGES, 3, 0);
+        List<Message> others = TestData.messages(OTHER_CHATROOM, MESSAGES, 3, MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            ids.add(chatDatabase.requestDao().insert(messages.get(i)));
+            chatDatabase.requestDao().insert(others.get(i));
+        }
+    }
+
+    @After
+    public void closeDatabase() {
+        chatDatabase.close();
+    }
+
+    private LoadResult.Page<Long, Message> load(LoadParams<Long> params) throws Exception {
+        MessagePagingSource source = new MessagePagingSource(chatDatabase, TestData.CHATROOM);
+        LoadResult<Long, Message> result = source.loadFuture(params).get();
+        assertTrue(result instanceof LoadResult.Page);
+        return (LoadResult.Page<Long, Message>) result;
+    }
+
+    private static List<Long> idsOf(List<Message> messages) {
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            assertEquals(TestData.CHATROOM, message.chatroom);
+            ids.add(message.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void refreshOpensAtNewest() throws Exception {
+        LoadResult.Page<Long, Message> page = load(new LoadParams.Refresh<>(null, PAGE_SIZE, false));
+        assertEquals(ids.subList(MESSAGES - PAGE_SIZE, MESSAGES), idsOf(page.getData()));
+        assertEquals(ids.get(MESSAGES - PAGE_SIZE), page.getPrevKey());
+        assertNull(page.getNextKey());
+    }
+
+    @Test
+    public void prependBeforeKey() throws Exception {
+        int at = 50;
+        LoadResult.Page<Long, Message> page = load(new LoadParams.Prepend<>(ids.get(at), PAGE_SIZE, false));
+        // The key itself is on the page that follows.
+        assertEquals(ids.subList(at - PAGE_SIZE, at), idsOf(page.getData()));
+        assertEquals(ids.get(at - PAGE_SIZE), page.getPrevKey());
+    }
+
+    @Test
+    public void prependStopsAtOldest() throws Exception {
+        int at = 4;
+        LoadResult.Page<Long, Message> page = load(new LoadParams.Prepend<>(ids.get(at), PAGE_SIZE, false));
+        assertEquals(ids.subList(0, at), idsOf(page.getData()));
+        assertNull(page.getPrevKey());
+    }
+
+    @Test
+    public void appendAfterKey() throws Exception {
+        int at = 50;
+        LoadResult.Page<Long, Message> page = load(new LoadParams.Append<>(ids.get(at), PAGE_SIZE, false));
+        assertEquals(ids.subList(at + 1, at + 1 + PAGE_SIZE), idsOf(page.getData()));
+        assertEquals(ids.get(at + PAGE_SIZE), page.getNextKey());
+    }
+
+    @Test
+    public void appendStopsAtNewest() throws Exception {
+        int at = MESSAGES - 3;
+        LoadResult.Page<Long, Message> page = load(new LoadParams.Append<>(ids.get(at), PAGE_SIZE, false));
+        assertEquals(ids.subList(at + 1, MESSAGES), idsOf(page.getData()));
+        assertNull(page.getNextKey());
+
+        page = load(new LoadParams.Append<>(ids.get(MESSAGES - 1), PAGE_SIZE, false));
+        assertTrue(page.getData().isEmpty());
+        assertNull(page.getPrevKey());
+        assertNull(page.getNextKey());
+    }
+
+    @Test
+    public void refreshAroundKey() throws Exception {
+        int at = 50;
+        LoadResult.Page<Long, Message> page = load(new LoadParams.Refresh<>(ids.get(at), PAGE_SIZE, false));
+        // Half a page up to and including the key, and half a page after it.
+        int from = at - PAGE_SIZE / 2 + 1;
+        assertEquals(ids.subList(from, from + PAGE_SIZE), idsOf(page.getData()));
+        assertEquals(ids.get(from), page.getPrevKey());
+        assertEquals(ids.get(from + PAGE_SIZE - 1), page.getNextKey());
+
+        // The pages before and after the window join up with it.
+        assertEquals(ids.get(from - 1), idsOf(load(new LoadParams.Prepend<>(page.getPrevKey(), PAGE_SIZE, false)).getData()).get(PAGE_SIZE - 1));
+        assertEquals(ids.get(from + PAGE_SIZE), idsOf(load(new LoadParams.Append<>(page.getNextKey(), PAGE_SIZE, false)).getData()).get(0));
+    }
+
+    @Test
+    public void refreshKeyIsAnchorMessage() throws Exception {
+        int at = 50;
+        LoadResult.Page<Long, Message> page = load(new LoadParams.Refresh<>(ids.get(at), PAGE_SIZE, false));
+        int anchor = 3;
+        PagingState<Long, Message> state = new PagingState<>(Collections.singletonList(page), anchor,
+                new PagingConfig(PAGE_SIZE), 0);
+        MessagePagingSource source = new MessagePagingSource(chatDatabase, TestData.CHATROOM);
+        assertEquals(page.getData().get(anchor).id, (long) source.getRefreshKey(state));
+
+        PagingState<Long, Message> unanchored = new PagingState<>(Collections.singletonList(page), null,
+                new PagingConfig(PAGE_SIZE), 0);
+        assertNull(source.getRefreshKey(unanchored));
+    }
+
+    /*
+     * A sender whose messages share timestamps: pages of two, forwards and backwards, must
+     * neither skip nor repeat the messages at a page boundary.
+     */
+    @Test
+    public void senderPagesWithEqualTimestamps() throws Exception {
+        String sender = TestData.peerName(3);
+        chatDatabase.peerDao().upsert(TestData.peers(4));
+        long[] times = { 1, 2, 2, 2, 2, 2, 3 };
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < times.length; i++) {
+            Message message = TestData.message(0, "Message " + i);
+            message.sender = sender;
+            message.timestamp = new Date(TestData.START_TIME + times[i]);
+            expected.add(chatDatabase.requestDao().insert(message));
+        }
+        MessageDao messageDao = chatDatabase.messageDao();
+
+        List<Long> forwards = new ArrayList<>();
+        Message last = null;
+        List<Message> page = messageDao.fetchMessagesFromPeerAfter(sender, new Date(0), 0, 2).get();
+        while (!page.isEmpty()) {
+            forwards.addAll(idsOfSender(page, sender));
+            last = page.get(page.size() - 1);
+            page = messageDao.fetchMessagesFromPeerAfter(sender, last.timestamp, last.id, 2).get();
+        }
+        assertEquals(expected, forwards);
+
+        List<Long> backwards = new ArrayList<>();
+        page = messageDao.fetchMessagesFromPeerBefore(sender, new Date(Long.MAX_VALUE), Long.MAX_VALUE, 2).get();
+        while (!page.isEmpty()) {
+            backwards.addAll(0, reversed(idsOfSender(page, sender)));
+            Message first = page.get(page.size() - 1);
+            page = messageDao.fetchMessagesFromPeerBefore(sender, first.timestamp, first.id, 2).get();
+        }
+        assertEquals(expected, backwards);
+    }
+
+    private static List<Long> idsOfSender(List<Message> messages, String sender) {
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            assertEquals(sender, message.sender);
+            ids.add(message.id);
+        }
+        return ids;
+    }
+
+    private static List<Long> reversed(List<Long> ids) {
+        List<Long> result = new ArrayList<>(ids);
+        Collections.reverse(result);
+        return result;
+    }
+
+}
@@ -0,0 +1,103 @@
+package edu.stevens.cs522.chat.databases;
+
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The message queries in MessageDao use the composite indexes on Message, so they neither scan
+ * the table nor sort the results.  The SQL is the same as in the DAO, with the parameters bound.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageQueryPlanTest {
+
+    private static final String CHATROOM_SEQNUM_INDEX = "index_Message_chatroom_seqNum_timestamp";
+
+    private static final String CHATROOM_ID_INDEX = "index_Message_chatroom_id";
+
+    private static final String SENDER_INDEX = "index_Message_sender_timestamp";
+
+    private ChatDatabase chatDatabase;
+
+    @Before
+    public void openDatabase() {
+        chatDatabase = ChatDatabase.build(ApplicationProvider.getApplicationContext(), null, DatabaseProfile.DEFAULT);
+        TestData.setUp(chatDatabase, 5);
+        chatDatabase.requestDao().insert(TestData.messages(TestData.CHATROOM, 200, 5, 0));
+    }
+
+    @After
+    public void closeDatabase() {
+        chatDatabase.close();
+    }
+
+    private List<String> explain(String sql, Object... args) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = chatDatabase.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        return plan;
+    }
+
+    private void assertUsesIndex(String index, String sql, Object... args) {
+        List<String> plan = explain(sql, args);
+        boolean usesIndex = false;
+        for (String step : plan) {
+            usesIndex |= step.contains("INDEX " + index);
+            assertFalse("Sorts the results: " + plan, step.contains("TEMP B-TREE"));
+            assertFalse("Scans the table: " + plan, step.matches("SCAN (TABLE )?Message\\b.*") && !step.contains("INDEX"));
+        }
+        assertTrue("Does not use " + index + ": " + plan, usesIndex);
+    }
+
+    @Test
+    public void chatroomBySeqNum() {
+        assertUsesIndex(CHATROOM_SEQNUM_INDEX,
+                "SELECT * FROM Message WHERE chatroom = ? AND seqNum > ? AND seqNum > 0 ORDER BY seqNum, timestamp LIMIT ?",
+                TestData.CHATROOM, 100, 20);
+        assertUsesIndex(CHATROOM_SEQNUM_INDEX,
+                "SELECT * FROM Message WHERE chatroom = ? AND seqNum < ? AND seqNum > 0 ORDER BY seqNum DESC, timestamp DESC LIMIT ?",
+                TestData.CHATROOM, 100, 20);
+    }
+
+    @Test
+    public void chatroomById() {
+        assertUsesIndex(CHATROOM_ID_INDEX,
+                "SELECT * FROM Message WHERE chatroom = ? AND id > ? ORDER BY id LIMIT ?",
+                TestData.CHATROOM, 100, 20);
+        assertUsesIndex(CHATROOM_ID_INDEX,
+                "SELECT * FROM Message WHERE chatroom = ? AND id < ? ORDER BY id DESC LIMIT ?",
+                TestData.CHATROOM, 100, 20);
+    }
+
+    @Test
+    public void senderByTimestamp() {
+        assertUsesIndex(SENDER_INDEX,
+                "SELECT * FROM Message WHERE sender = ? ORDER BY timestamp, id",
+                TestData.peerName(1));
+        assertUsesIndex(SENDER_INDEX,
+                "SELECT * FROM Message WHERE sender = ? AND (timestamp > ? OR (timestamp = ? AND id > ?)) ORDER BY timestamp, id LIMIT ?",
+                TestData.peerName(1), TestData.START_TIME, TestData.START_TIME, 100, 20);
+        assertUsesIndex(SENDER_INDEX,
+                "SELECT * FROM Message WHERE sender = ? AND (timestamp < ? OR (timestamp = ? AND id < ?)) ORDER BY timestamp DESC, id DESC LIMIT ?",
+                TestData.peerName(1), TestData.START_TIME, TestData.START_TIME, 100, 20);
+    }
+
+}
@@ -0,0 +1,79 @@
+package edu.stevens.cs522.chat.databases;
+
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.SyncState;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The migrations in ChatDatabase, from the first version of the database, leave the schema that
+ * Room exports for the entities (in app/schemas), and keep the messages already stored.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    private static final int MESSAGES = 20;
+
+    // Messages posted but not yet accepted by the server
+    private static final int UNSENT = 2;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(), ChatDatabase.class);
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    @Test
+    public void migrateFromVersion1() throws IOException {
+        try (SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1)) {
+            db.execSQL("INSERT INTO Peer (name, timestamp, latitude, longitude) VALUES (?, ?, ?, ?)",
+                    new Object[]{TestData.peerName(0), TestData.START_TIME, 40.744906, -74.023937});
+            db.execSQL("INSERT INTO Chatroom (name) VALUES (?)", new Object[]{TestData.CHATROOM});
+            for (int i = 0; i < MESSAGES; i++) {
+                long seqNum = i < UNSENT ? 0 : i;
+                String text = i == MESSAGES - 1 ? "Message about migration" : "Message number " + i;
+                db.execSQL("INSERT INTO Message (chatroom, messageText, seqNum, appID, timestamp, latitude, longitude, sender) " +
+                                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                        new Object[]{TestData.CHATROOM, text, seqNum, TestData.APP_ID.toString(),
+                                TestData.START_TIME + 1000L * i, 40.744906, -74.023937, TestData.peerName(0)});
+            }
+        }
+
+        try (SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 7, true,
+                ChatDatabase.MIGRATION_1_2, ChatDatabase.MIGRATION_2_3, ChatDatabase.MIGRATION_3_4,
+                ChatDatabase.MIGRATION_4_5, ChatDatabase.MIGRATION_5_6, ChatDatabase.MIGRATION_6_7)) {
+            assertEquals(MESSAGES, queryLong(db, "SELECT COUNT(*) FROM Message"));
+
+            // Downloading resumes after the messages already stored
+            assertEquals(MESSAGES - 1, queryLong(db,
+                    "SELECT lastSequenceNumber FROM SyncState WHERE id = " + SyncState.ID));
+
+            // The outbox starts empty
+            assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM Outbox"));
+
+            // Messages stored before the migration are in the full-text index
+            assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM MessageFts WHERE MessageFts MATCH 'migration'"));
+            assertEquals(MESSAGES - 1, queryLong(db, "SELECT COUNT(*) FROM MessageFts WHERE MessageFts MATCH 'number'"));
+        }
+    }
+
+}
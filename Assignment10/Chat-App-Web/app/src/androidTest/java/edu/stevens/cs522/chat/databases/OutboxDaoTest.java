@@ -0,0 +1,121 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Message;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Messages abandoned after too many attempts are not sent or counted as waiting, and are
+ * sent again, in their original order, once they are retried.  Messages left sending by a
+ * drain that was killed are sent again, in order, unless the chat socket is waiting for them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxDaoTest {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    private ChatDatabase chatDatabase;
+
+    private OutboxDao outboxDao;
+
+    @Before
+    public void openDatabase() {
+        chatDatabase = ChatDatabase.build(ApplicationProvider.getApplicationContext(), null, DatabaseProfile.DEFAULT);
+        TestData.setUp(chatDatabase, 1);
+        outboxDao = chatDatabase.outboxDao();
+    }
+
+    @After
+    public void closeDatabase() {
+        chatDatabase.close();
+    }
+
+    private List<Message> enqueue(int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(TestData.message(0, "Message " + i));
+        }
+        outboxDao.enqueue(messages);
+        return messages;
+    }
+
+    private static List<Long> ids(List<Message> messages) {
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            ids.add(message.id);
+        }
+        return ids;
+    }
+
+    /*
+     * Send the next batch, and have it fail.
+     */
+    private void sendAndFail() {
+        outboxDao.markSending(ids(outboxDao.getPendingMessages(10)));
+        outboxDao.resetSending();
+        outboxDao.abandon(MAX_ATTEMPTS);
+    }
+
+    @Test
+    public void failedMessagesRetried() {
+        List<Message> first = enqueue(2);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            sendAndFail();
+        }
+        assertEquals(0, outboxDao.count());
+        assertEquals(2, outboxDao.countFailed());
+        assertEquals(0, outboxDao.getPendingMessages(10).size());
+
+        List<Message> later = enqueue(1);
+        assertEquals(1, outboxDao.count());
+        assertEquals(ids(later), ids(outboxDao.getPendingMessages(10)));
+
+        assertEquals(2, outboxDao.retryFailed());
+        assertEquals(3, outboxDao.count());
+        assertEquals(0, outboxDao.countFailed());
+        List<Long> expected = ids(first);
+        expected.addAll(ids(later));
+        assertEquals(expected, ids(outboxDao.getPendingMessages(10)));
+
+        // A retried message gets the full number of attempts again
+        sendAndFail();
+        assertEquals(3, outboxDao.count());
+    }
+
+    @Test
+    public void killedDrainRequeued() {
+        List<Message> killed = enqueue(2);
+        // A drain sends them over the chat socket, and the app is killed before they are acked
+        outboxDao.markSending(ids(killed));
+        // In the new process, a drain sends this one over the socket, which is waiting for its ack
+        List<Message> inFlight = enqueue(1);
+        outboxDao.markSending(ids(inFlight));
+        List<Message> later = enqueue(1);
+
+        // The next drain, with the socket still connected
+        outboxDao.resetSendingExcept(ids(inFlight));
+
+        List<Long> expected = ids(killed);
+        expected.addAll(ids(later));
+        assertEquals(expected, ids(outboxDao.getPendingMessages(10)));
+        assertEquals(4, outboxDao.count());
+
+        // With nothing in flight (e.g. the socket is down), everything left sending is requeued
+        outboxDao.resetSendingExcept(Collections.<Long>emptyList());
+        assertEquals(4, outboxDao.getPendingMessages(10).size());
+    }
+
+}
@@ -0,0 +1,170 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.paging.PagingSource.LoadParams;
+import androidx.paging.PagingSource.LoadResult;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.databases.MessageSearchPagingSource.Scope;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Full-text search: hits ranked by the number of matching terms, then newest first, scoped to
+ * a chatroom or a peer, and paged by offset into the results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchDaoTest {
+
+    private static final String OTHER_CHATROOM = "other";
+
+    private static final int PAGE_SIZE = 10;
+
+    private ChatDatabase chatDatabase;
+
+    private SearchDao searchDao;
+
+    private long time = TestData.START_TIME;
+
+    @Before
+    public void openDatabase() {
+        chatDatabase = ChatDatabase.build(ApplicationProvider.getApplicationContext(), null, DatabaseProfile.DEFAULT);
+        TestData.setUp(chatDatabase, 2);
+        chatDatabase.chatroomDao().insert(new Chatroom(OTHER_CHATROOM));
+        searchDao = chatDatabase.searchDao();
+    }
+
+    @After
+    public void closeDatabase() {
+        chatDatabase.close();
+    }
+
+    /*
+     * Each message is newer than the one before.
+     */
+    private long insert(String chatroom, String sender, String text) {
+        Message message = TestData.message(0, text);
+        message.chatroom = chatroom;
+        message.sender = sender;
+        message.timestamp = new Date(time += 1000);
+        return chatDatabase.requestDao().insert(message);
+    }
+
+    private long insert(String text) {
+        return insert(TestData.CHATROOM, TestData.peerName(0), text);
+    }
+
+    private static List<Long> ids(List<Message> messages) {
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            ids.add(message.id);
+        }
+        return ids;
+    }
+
+    private static String match(String text) {
+        return MessageSearchPagingSource.toMatchQuery(text);
+    }
+
+    @Test
+    public void rankedByMatchingTerms() throws Exception {
+        long once = insert("apple and banana");
+        long twice = insert("apple banana apple");
+        long newer = insert("Apples with bananas");
+        insert("banana split");
+        insert("nothing to see");
+
+        // Most matching terms first, then newest first; every word must match
+        assertEquals(Arrays.asList(twice, newer, once), ids(searchDao.searchAll(match("apple banana"), PAGE_SIZE, 0).get()));
+        assertTrue(searchDao.searchAll(match("cherry"), PAGE_SIZE, 0).get().isEmpty());
+    }
+
+    @Test
+    public void scopedToChatroomOrPeer() throws Exception {
+        long here = insert("meeting at noon");
+        long elsewhere = insert(OTHER_CHATROOM, TestData.peerName(0), "meeting at one");
+        long otherPeer = insert(TestData.CHATROOM, TestData.peerName(1), "meeting at two");
+
+        String query = match("meeting");
+        assertEquals(Arrays.asList(otherPeer, here),
+                ids(searchDao.searchChatroom(query, TestData.CHATROOM, PAGE_SIZE, 0).get()));
+        assertEquals(Collections.singletonList(elsewhere),
+                ids(searchDao.searchChatroom(query, OTHER_CHATROOM, PAGE_SIZE, 0).get()));
+        assertEquals(Arrays.asList(elsewhere, here),
+                ids(searchDao.searchPeer(query, TestData.peerName(0), PAGE_SIZE, 0).get()));
+        assertEquals(Arrays.asList(otherPeer, elsewhere, here),
+                ids(searchDao.searchAll(query, PAGE_SIZE, 0).get()));
+    }
+
+    private LoadResult.Page<Integer, Message> load(MessageSearchPagingSource source, LoadParams<Integer> params) throws Exception {
+        LoadResult<Integer, Message> result = source.loadFuture(params).get();
+        assertTrue(result instanceof LoadResult.Page);
+        return (LoadResult.Page<Integer, Message>) result;
+    }
+
+    @Test
+    public void pagedByOffset() throws Exception {
+        // Equal rank, so the hits are newest first
+        List<Long> hits = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            hits.add(0, insert("hit number " + i));
+        }
+        insert("miss");
+        MessageSearchPagingSource source = new MessageSearchPagingSource(chatDatabase, "hit", Scope.CHATROOM, TestData.CHATROOM);
+
+        LoadResult.Page<Integer, Message> page = load(source, new LoadParams.Refresh<>(null, PAGE_SIZE, false));
+        assertEquals(hits.subList(0, 10), ids(page.getData()));
+        assertNull(page.getPrevKey());
+        assertEquals(10, (int) page.getNextKey());
+
+        page = load(source, new LoadParams.Append<>(10, PAGE_SIZE, false));
+        assertEquals(hits.subList(10, 20), ids(page.getData()));
+        assertEquals(10, (int) page.getPrevKey());
+        assertEquals(20, (int) page.getNextKey());
+
+        // The last page is short
+        page = load(source, new LoadParams.Append<>(20, PAGE_SIZE, false));
+        assertEquals(hits.subList(20, 25), ids(page.getData()));
+        assertEquals(20, (int) page.getPrevKey());
+        assertNull(page.getNextKey());
+
+        // Prepending ends where the page after starts
+        page = load(source, new LoadParams.Prepend<>(20, PAGE_SIZE, false));
+        assertEquals(hits.subList(10, 20), ids(page.getData()));
+        assertEquals(10, (int) page.getPrevKey());
+        assertEquals(20, (int) page.getNextKey());
+
+        // ... and stops at the first hit, even if that is less than a page
+        page = load(source, new LoadParams.Prepend<>(5, PAGE_SIZE, false));
+        assertEquals(hits.subList(0, 5), ids(page.getData()));
+        assertNull(page.getPrevKey());
+        assertEquals(5, (int) page.getNextKey());
+    }
+
+    @Test
+    public void nothingToSearchFor() throws Exception {
+        insert("anything");
+        MessageSearchPagingSource source = new MessageSearchPagingSource(chatDatabase, " -- ", Scope.ALL, null);
+        LoadResult.Page<Integer, Message> page = load(source, new LoadParams.Refresh<>(null, PAGE_SIZE, false));
+        assertTrue(page.getData().isEmpty());
+        assertNull(page.getPrevKey());
+        assertNull(page.getNextKey());
+    }
+
+}
@@ -0,0 +1,124 @@
+package edu.stevens.cs522.chat.databases;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.UUID;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.settings.Settings;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Rows/sec for applying a sync download to the database, one transaction per record (as before
+ * batched apply) and one transaction per batch (as the sync writer does now), for several batch
+ * sizes.  Each batch size is saved as the sync batch size setting and read back, as the sync
+ * writer reads it.  The database is on disk, so the cost of committing each transaction is
+ * included, and each run starts from a fresh database, so none applies to a larger table than
+ * the others.  Results are in the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncApplyBenchmark {
+
+    private static final String TAG = SyncApplyBenchmark.class.getCanonicalName();
+
+    private static final String DATABASE_NAME = "sync-apply-benchmark.db";
+
+    private static final int MESSAGES = 2000;
+
+    private static final int PEERS = 50;
+
+    private static final int[] BATCH_SIZES = { 50, 200, Settings.DEFAULT_SYNC_BATCH_SIZE, MESSAGES };
+
+    // The app id of the app under test (messages from other apps are inserted)
+    private static final UUID APP_ID = UUID.randomUUID();
+
+    private Context context;
+
+    private ChatDatabase chatDatabase;
+
+    private int savedBatchSize;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        savedBatchSize = Settings.getSyncBatchSize(context);
+    }
+
+    @After
+    public void restoreBatchSize() {
+        Settings.saveSyncBatchSize(context, savedBatchSize);
+    }
+
+    @After
+    public void closeDatabase() {
+        if (chatDatabase != null) {
+            chatDatabase.close();
+            chatDatabase = null;
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    private RequestDao openDatabase() {
+        closeDatabase();
+        chatDatabase = ChatDatabase.build(context, DATABASE_NAME, DatabaseProfile.DEFAULT);
+        TestData.setUp(chatDatabase, PEERS);
+        return chatDatabase.requestDao();
+    }
+
+    private static double rowsPerSecond(int rows, long nanos) {
+        return rows * 1e9 / nanos;
+    }
+
+    @Test
+    public void applyPerRecordVersusBatched() {
+        List<Message> messages = TestData.messages(TestData.CHATROOM, MESSAGES, PEERS, 0);
+
+        /*
+         * Before: each record is committed on its own.
+         */
+        RequestDao requestDao = openDatabase();
+        long start = System.nanoTime();
+        for (Message message : messages) {
+            requestDao.upsert(APP_ID, message);
+        }
+        long perRecord = System.nanoTime() - start;
+        assertEquals(MESSAGES, TestData.count(chatDatabase, "Message"));
+
+        Log.i(TAG, String.format("Applied %d messages: %.0f rows/sec per record.",
+                MESSAGES, rowsPerSecond(MESSAGES, perRecord)));
+
+        /*
+         * After: records are committed in batches of the configured size.
+         */
+        for (int size : BATCH_SIZES) {
+            Settings.saveSyncBatchSize(context, size);
+            int batchSize = Settings.getSyncBatchSize(context);
+            assertEquals(size, batchSize);
+
+            messages = TestData.messages(TestData.CHATROOM, MESSAGES, PEERS, 0);
+            requestDao = openDatabase();
+            start = System.nanoTime();
+            for (int i = 0; i < messages.size(); i += batchSize) {
+                requestDao.upsert(APP_ID, messages.subList(i, Math.min(i + batchSize, messages.size())));
+            }
+            long batched = System.nanoTime() - start;
+            assertEquals(MESSAGES, TestData.count(chatDatabase, "Message"));
+
+            Log.i(TAG, String.format("Applied %d messages: %.0f rows/sec in batches of %d (%.1fx per record).",
+                    MESSAGES, rowsPerSecond(MESSAGES, batched), batchSize, (double) perRecord / batched));
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.client.RetryPolicy;
+import edu.stevens.cs522.chat.rest.client.ServerApi;
+import edu.stevens.cs522.chat.rest.client.StreamingResponse;
+import edu.stevens.cs522.chat.rest.codec.JsonSyncCodec;
+import edu.stevens.cs522.chat.rest.codec.SyncCodec;
+import edu.stevens.cs522.chat.rest.codec.SyncDecoder;
+import edu.stevens.cs522.chat.rest.request.SynchronizeRequest;
+import edu.stevens.cs522.chat.settings.Settings;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Gzip of the sync upload and download, through RestMethod against a local stand-in for the
+ * chat server: the server decodes the compressed upload, the client transparently decompresses
+ * the download, both are smaller compressed, and a server that does not understand a compressed
+ * upload gets uncompressed uploads from then on.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GzipSyncTest {
+
+    private static final int MESSAGES = 500;
+
+    private static final int PEERS = 20;
+
+    private Context context;
+
+    private MockWebServer server;
+
+    private Uri serverUri;
+
+    private RestMethod restMethod;
+
+    private Gson gson;
+
+    private SyncCodec codec;
+
+    @Before
+    public void startServer() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        server = new MockWebServer();
+        server.start();
+        serverUri = Uri.parse(server.url("/").toString());
+        Settings.saveServerUri(context, serverUri);
+        Settings.saveChatName(context, TestData.peerName(0));
+        Settings.forgetServerCapabilities(context, serverUri);
+        restMethod = new RestMethod(context);
+        gson = restMethod.getGson();
+        codec = new JsonSyncCodec(gson);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        Settings.forgetServerCapabilities(context, serverUri);
+        server.shutdown();
+    }
+
+    /*
+     * The download, as the server would send it.
+     */
+    private byte[] download(List<Peer> peers, List<Chatroom> chatrooms, List<Message> messages) {
+        JsonObject json = new JsonObject();
+        json.add(RestMethod.PEERS, gson.toJsonTree(peers));
+        json.add(RestMethod.CHATROOMS, gson.toJsonTree(chatrooms));
+        json.add(RestMethod.MESSAGES, gson.toJsonTree(messages));
+        return gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private MockResponse emptyDownload() {
+        return new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", RestMethod.JSON_TYPE)
+                .setBody(new String(download(TestData.peers(0), TestData.chatrooms(0), TestData.messages(0, 1)), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        Buffer buffer = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(buffer))) {
+            sink.write(bytes);
+        }
+        return buffer.readByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        return Okio.buffer(new GzipSource(new Buffer().write(bytes))).readByteArray();
+    }
+
+    private StreamingResponse sync(List<Chatroom> chatrooms, List<Message> messages) throws IOException {
+        SynchronizeRequest request = new SynchronizeRequest();
+        request.appID = TestData.APP_ID;
+        request.timestamp = new Date();
+        request.pageSize = MESSAGES;
+        return restMethod.perform(request, codec, TestData.upload(codec, chatrooms, messages));
+    }
+
+    @Test
+    public void uploadIsDecodedByServer() throws Exception {
+        List<Chatroom> chatrooms = TestData.chatrooms(3);
+        List<Message> messages = TestData.messages(MESSAGES, PEERS);
+        server.enqueue(emptyDownload());
+
+        StreamingResponse response = sync(chatrooms, messages);
+        assertTrue(response.getResponse().isValid());
+        response.disconnect();
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals(RestMethod.GZIP_ENCODING, request.getHeader(ServerApi.CONTENT_ENCODING));
+        byte[] compressed = request.getBody().readByteArray();
+        byte[] plain = gunzip(compressed);
+
+        JsonObject upload = JsonParser.parseString(new String(plain, StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonArray uploadedChatrooms = upload.getAsJsonArray(RestMethod.CHATROOMS);
+        JsonArray uploadedMessages = upload.getAsJsonArray(RestMethod.MESSAGES);
+        assertEquals(chatrooms.size(), uploadedChatrooms.size());
+        assertEquals(messages.size(), uploadedMessages.size());
+        Message last = gson.fromJson(uploadedMessages.get(MESSAGES - 1), Message.class);
+        assertEquals(messages.get(MESSAGES - 1).messageText, last.messageText);
+        assertEquals(messages.get(MESSAGES - 1).timestamp, last.timestamp);
+
+        assertTrue(compressed.length < plain.length);
+    }
+
+    @Test
+    public void uploadIsUncompressedWhenDisabled() throws Exception {
+        Settings.saveGzipUpload(context, serverUri, false);
+        server.enqueue(emptyDownload());
+
+        sync(TestData.chatrooms(1), TestData.messages(10, 2)).disconnect();
+
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader(ServerApi.CONTENT_ENCODING));
+        JsonObject upload = JsonParser.parseString(request.getBody().readUtf8()).getAsJsonObject();
+        assertEquals(10, upload.getAsJsonArray(RestMethod.MESSAGES).size());
+    }
+
+    @Test
+    public void downloadIsDecompressedByClient() throws Exception {
+        List<Peer> peers = TestData.peers(PEERS);
+        List<Chatroom> chatrooms = TestData.chatrooms(3);
+        List<Message> messages = TestData.messages(MESSAGES, PEERS);
+        byte[] plain = download(peers, chatrooms, messages);
+        byte[] compressed = gzip(plain);
+
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", RestMethod.JSON_TYPE)
+                .setHeader(ServerApi.CONTENT_ENCODING, RestMethod.GZIP_ENCODING)
+                .setBody(new Buffer().write(compressed)));
+
+        StreamingResponse response = sync(TestData.chatrooms(0), TestData.messages(0, 1));
+        assertTrue(response.getResponse().isValid());
+
+        // OkHttp asked for gzip, so it decompresses the response for us.
+        RecordedRequest request = server.takeRequest();
+        assertEquals(RestMethod.GZIP_ENCODING, request.getHeader("Accept-Encoding"));
+
+        int peerCount = 0, chatroomCount = 0, messageCount = 0;
+        Message last = null;
+        try (SyncDecoder decoder = codec.newDecoder(response.getInputStream())) {
+            while (decoder.readPeer() != null) {
+                peerCount++;
+            }
+            while (decoder.readChatroom() != null) {
+                chatroomCount++;
+            }
+            Message message;
+            while ((message = decoder.readMessage()) != null) {
+                last = message;
+                messageCount++;
+            }
+        } finally {
+            response.disconnect();
+        }
+        assertEquals(PEERS, peerCount);
+        assertEquals(chatrooms.size(), chatroomCount);
+        assertEquals(MESSAGES, messageCount);
+        assertNotNull(last);
+        assertEquals(messages.get(MESSAGES - 1).seqNum, last.seqNum);
+
+        assertTrue(compressed.length < plain.length);
+    }
+
+    /*
+     * The server rejects the compressed upload, either because it knows it does not support
+     * it (415) or because it tried to parse it as is (400), and the next upload is uncompressed.
+     */
+    private void assertFallback(int code) throws Exception {
+        Settings.forgetServerCapabilities(context, serverUri);
+        assertTrue(Settings.isGzipUpload(context, serverUri));
+        server.enqueue(new MockResponse().setResponseCode(code));
+        server.enqueue(emptyDownload());
+
+        StreamingResponse rejected = sync(TestData.chatrooms(1), TestData.messages(10, 2));
+        assertFalse(rejected.getResponse().isValid());
+        rejected.disconnect();
+        assertEquals(RestMethod.GZIP_ENCODING, server.takeRequest().getHeader(ServerApi.CONTENT_ENCODING));
+        assertFalse(Settings.isGzipUpload(context, serverUri));
+
+        StreamingResponse accepted = sync(TestData.chatrooms(1), TestData.messages(10, 2));
+        assertTrue(accepted.getResponse().isValid());
+        accepted.disconnect();
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader(ServerApi.CONTENT_ENCODING));
+        JsonObject upload = JsonParser.parseString(request.getBody().readUtf8()).getAsJsonObject();
+        assertEquals(10, upload.getAsJsonArray(RestMethod.MESSAGES).size());
+    }
+
+    @Test
+    public void rejectedUploadDisablesCompression() throws Exception {
+        assertFallback(RestMethod.HTTP_RESPONSE_CODE_UNSUPPORTED_MEDIA_TYPE);
+        assertFallback(400);
+    }
+
+    @Test
+    public void retryLaterKeepsCompression() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader(RetryPolicy.RETRY_AFTER_HEADER, "3600"));
+
+        sync(TestData.chatrooms(1), TestData.messages(10, 2)).disconnect();
+        assertTrue(Settings.isGzipUpload(context, serverUri));
+    }
+
+}
@@ -0,0 +1,118 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stevens.cs522.chat.rest.client.ServerApi;
+import edu.stevens.cs522.chat.rest.request.PostMessageRequest;
+import edu.stevens.cs522.chat.rest.request.PostMessageResponse;
+import edu.stevens.cs522.chat.settings.Settings;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latency of back-to-back message posts against a local stand-in for the chat server, with a
+ * new HTTP client and API stub for each request (as RestMethod used to do) and through
+ * RestMethod, which shares one client and stub for all requests.  The first posts of each
+ * warm up the JIT and are not counted.  The local server is plain HTTP, so this only measures
+ * the cost of the client, stub and TCP connection per request; against a real server, each new
+ * connection also pays for a TLS handshake.  Results are in the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PostLatencyBenchmark {
+
+    private static final String TAG = PostLatencyBenchmark.class.getCanonicalName();
+
+    private static final int POSTS = 200;
+
+    private static final int WARM_UP = 20;
+
+    private Context context;
+
+    private MockWebServer server;
+
+    private RestMethod restMethod;
+
+    @Before
+    public void startServer() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        final AtomicLong seqNum = new AtomicLong();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                return new MockResponse().setResponseCode(201)
+                        .setHeader("Location", "/chat/messages/" + seqNum.incrementAndGet());
+            }
+        });
+        server.start();
+        Settings.saveServerUri(context, Uri.parse(server.url("/").toString()));
+        restMethod = new RestMethod(context);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    private ServerApi newServerApi() {
+        return MessagePosts.newServerApi(server.url("/"), restMethod.getGson());
+    }
+
+    private void postPerRequest(PostMessageRequest request) throws IOException {
+        Response<Void> response = newServerApi().postMessage(request.message.sender, request.message, request).execute();
+        assertTrue(response.isSuccessful());
+    }
+
+    private void postShared(PostMessageRequest request) {
+        assertTrue(restMethod.perform(request) instanceof PostMessageResponse);
+    }
+
+    /*
+     * Average latency in microseconds of the posts after the warm-up.
+     */
+    private long postAll(boolean shared) throws IOException {
+        long elapsed = 0;
+        for (int i = 0; i < WARM_UP + POSTS; i++) {
+            PostMessageRequest request = MessagePosts.newRequest(i);
+            long start = System.nanoTime();
+            if (shared) {
+                postShared(request);
+            } else {
+                postPerRequest(request);
+            }
+            if (i >= WARM_UP) {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+        return elapsed / POSTS / 1000;
+    }
+
+    @Test
+    public void backToBackPosts() throws Exception {
+        long perRequest = postAll(false);
+        long shared = postAll(true);
+        Log.i(TAG, String.format("Back-to-back posts: %d us per post with a client per request, %d us with a shared client (%.1fx).",
+                perRequest, shared, (double) perRequest / shared));
+    }
+
+}
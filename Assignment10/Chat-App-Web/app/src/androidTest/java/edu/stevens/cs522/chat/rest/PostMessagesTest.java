@@ -0,0 +1,137 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.rest.request.ChatServiceResponse;
+import edu.stevens.cs522.chat.rest.request.ErrorResponse;
+import edu.stevens.cs522.chat.rest.request.PostMessagesRequest;
+import edu.stevens.cs522.chat.rest.request.PostMessagesResponse;
+import edu.stevens.cs522.chat.settings.Settings;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Posting a batch of messages from the outbox, through the request processor against a local
+ * stand-in for the chat server: a batch is posted in one request and gets its sequence numbers
+ * from the response body, a batch of one is posted to the single message endpoint and gets its
+ * sequence number from the Location header, and a response that does not give one sequence
+ * number per message is an error.
+ *
+ * The messages are not in the app database (their ids are never assigned by it), so completing
+ * them does not change any stored message.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PostMessagesTest {
+
+    private Context context;
+
+    private MockWebServer server;
+
+    private Uri serverUri;
+
+    private RequestProcessor processor;
+
+    @Before
+    public void startServer() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        server = new MockWebServer();
+        server.start();
+        serverUri = Uri.parse(server.url("/").toString());
+        Settings.saveServerUri(context, serverUri);
+        Settings.saveChatName(context, TestData.peerName(0));
+        Settings.forgetServerCapabilities(context, serverUri);
+        processor = RequestProcessor.getInstance(context);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        Settings.forgetServerCapabilities(context, serverUri);
+        server.shutdown();
+    }
+
+    private static List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(TestData.message(-(i + 1), "Message " + i));
+        }
+        return messages;
+    }
+
+    private static String messagesPath() {
+        return "/chat/" + TestData.peerName(0) + "/messages";
+    }
+
+    @Test
+    public void batchPostedInOneRequest() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", RestMethod.JSON_TYPE)
+                .setBody("[11,12,13]"));
+
+        ChatServiceResponse response = processor.process(new PostMessagesRequest(messages(3)));
+        assertTrue(response instanceof PostMessagesResponse);
+        assertEquals(Arrays.asList(11L, 12L, 13L), ((PostMessagesResponse) response).getMessageIds());
+
+        assertEquals(1, server.getRequestCount());
+        RecordedRequest request = server.takeRequest();
+        assertEquals(messagesPath() + "/batch", request.getPath());
+        assertEquals(3, JsonParser.parseString(request.getBody().readUtf8()).getAsJsonArray().size());
+    }
+
+    @Test
+    public void singleMessagePostedWithLocation() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201)
+                .setHeader("Location", messagesPath() + "/42"));
+
+        ChatServiceResponse response = processor.process(new PostMessagesRequest(messages(1)));
+        assertTrue(response instanceof PostMessagesResponse);
+        assertEquals(Arrays.asList(42L), ((PostMessagesResponse) response).getMessageIds());
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals(messagesPath(), request.getPath());
+        assertTrue(JsonParser.parseString(request.getBody().readUtf8()).isJsonObject());
+    }
+
+    @Test
+    public void singleMessageWithoutLocation() {
+        server.enqueue(new MockResponse().setResponseCode(201));
+
+        ChatServiceResponse response = processor.process(new PostMessagesRequest(messages(1)));
+        assertTrue(response instanceof ErrorResponse);
+        assertEquals(ErrorResponse.Status.SERVER_ERROR, ((ErrorResponse) response).status);
+    }
+
+    @Test
+    public void wrongNumberOfSequenceNumbers() {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", RestMethod.JSON_TYPE)
+                .setBody("[11,12]"));
+
+        ChatServiceResponse response = processor.process(new PostMessagesRequest(messages(3)));
+        assertTrue(response instanceof ErrorResponse);
+        assertEquals(ErrorResponse.Status.SERVER_ERROR, ((ErrorResponse) response).status);
+        assertEquals(1, server.getRequestCount());
+    }
+
+}
@@ -0,0 +1,115 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.rest.request.PostMessagesRequest;
+import edu.stevens.cs522.chat.rest.request.PostMessagesResponse;
+import edu.stevens.cs522.chat.settings.Settings;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latency of a post through the request processor, cold (the first post after shutdown(),
+ * which creates the request processor, Gson, the HTTP client and stub, and a new connection)
+ * and warm (later posts through the same request processor, which reuse all of them, as every
+ * worker and service in the app process does now).  The posted message is not in the app
+ * database (its id is never assigned by it), so completing it does not change any stored
+ * message.  Results are in the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RequestProcessorBenchmark {
+
+    private static final String TAG = RequestProcessorBenchmark.class.getCanonicalName();
+
+    private static final int COLD_POSTS = 20;
+
+    private static final int WARM_POSTS = 200;
+
+    private static final int WARM_UP = 20;
+
+    private Context context;
+
+    private MockWebServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        final AtomicLong seqNum = new AtomicLong();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                return new MockResponse().setResponseCode(201)
+                        .setHeader("Location", "/chat/messages/" + seqNum.incrementAndGet());
+            }
+        });
+        server.start();
+        Settings.saveServerUri(context, Uri.parse(server.url("/").toString()));
+        RequestProcessor.shutdown();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        RequestProcessor.shutdown();
+        server.shutdown();
+    }
+
+    /*
+     * Latency in nanoseconds of a post through the request processor for the app.
+     */
+    private static long post(Context context, int i) {
+        PostMessagesRequest request = new PostMessagesRequest(
+                Collections.singletonList(TestData.message(-(i + 1), "Message number " + i)));
+        long start = System.nanoTime();
+        boolean posted = RequestProcessor.getInstance(context).process(request) instanceof PostMessagesResponse;
+        long elapsed = System.nanoTime() - start;
+        assertTrue(posted);
+        return elapsed;
+    }
+
+    @Test
+    public void coldVersusWarmPosts() {
+        // Warm up the JIT on the whole path, so the cold posts only pay for what shutdown() releases
+        for (int i = 0; i < WARM_UP; i++) {
+            post(context, i);
+        }
+
+        long cold = 0;
+        for (int i = 0; i < COLD_POSTS; i++) {
+            RequestProcessor.shutdown();
+            cold += post(context, i);
+        }
+
+        long warm = 0;
+        for (int i = 0; i < WARM_POSTS; i++) {
+            warm += post(context, i);
+        }
+
+        long coldMicros = cold / COLD_POSTS / 1000;
+        long warmMicros = warm / WARM_POSTS / 1000;
+        Log.i(TAG, String.format("Posts through the request processor: %d us cold (after shutdown), %d us warm (%.1fx).",
+                coldMicros, warmMicros, (double) coldMicros / Math.max(1, warmMicros)));
+    }
+
+}
@@ -0,0 +1,110 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import edu.stevens.cs522.base.work.PeriodicWorkRequest;
+import edu.stevens.cs522.chat.rest.SyncScheduler.NetworkType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The sync interval adapts to chat activity without replacing the periodic work from inside a
+ * sync, and the scheduler ignores callbacks once it has been stopped.  The network type is set
+ * by the test, after the callbacks from registering for network changes have been handled.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncSchedulerTest {
+
+    private SyncScheduler scheduler;
+
+    @Before
+    public void start() {
+        Context context = ApplicationProvider.getApplicationContext();
+        scheduler = SyncScheduler.getInstance(context);
+        scheduler.start();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        scheduler.onNetworkChanged(NetworkType.UNMETERED);
+    }
+
+    @After
+    public void stop() {
+        scheduler.stop();
+    }
+
+    @Test
+    public void syncCompletedKeepsPeriodicWork() {
+        PeriodicWorkRequest syncRequest = scheduler.getSyncRequest();
+        assertEquals(SyncScheduler.MIN_INTERVAL, syncRequest.getInterval());
+
+        scheduler.onSyncCompleted(false);
+        scheduler.onSyncCompleted(false);
+        assertEquals(4 * SyncScheduler.MIN_INTERVAL, scheduler.getInterval());
+        assertSame(syncRequest, scheduler.getSyncRequest());
+
+        scheduler.onSyncCompleted(true);
+        assertEquals(SyncScheduler.MIN_INTERVAL, scheduler.getInterval());
+        assertSame(syncRequest, scheduler.getSyncRequest());
+    }
+
+    @Test
+    public void periodicSyncSkippedUntilIntervalPassed() {
+        assertTrue(scheduler.onPeriodicSync());
+        scheduler.onSyncCompleted(false);
+        scheduler.onSyncCompleted(false);
+
+        // Four runs of the work, at the minimum interval, for each sync
+        assertFalse(scheduler.onPeriodicSync());
+        assertFalse(scheduler.onPeriodicSync());
+        assertFalse(scheduler.onPeriodicSync());
+        assertTrue(scheduler.onPeriodicSync());
+
+        // A failed sync does not complete, so the next run tries again
+        assertTrue(scheduler.onPeriodicSync());
+
+        // Activity brings the interval back to the minimum straight away
+        scheduler.onActivity("message posted");
+        assertTrue(scheduler.onPeriodicSync());
+    }
+
+    @Test
+    public void networkChangeReplacesPeriodicWork() {
+        PeriodicWorkRequest syncRequest = scheduler.getSyncRequest();
+        scheduler.onNetworkChanged(NetworkType.METERED);
+        assertNotSame(syncRequest, scheduler.getSyncRequest());
+        assertEquals(2 * SyncScheduler.MIN_INTERVAL, scheduler.getSyncRequest().getInterval());
+        assertEquals(2 * SyncScheduler.MIN_INTERVAL, scheduler.getInterval());
+
+        syncRequest = scheduler.getSyncRequest();
+        scheduler.onNetworkChanged(NetworkType.METERED);
+        assertSame(syncRequest, scheduler.getSyncRequest());
+    }
+
+    @Test
+    public void callbacksIgnoredAfterStop() {
+        scheduler.stop();
+        assertFalse(scheduler.isStarted());
+
+        scheduler.onSyncCompleted(false);
+        scheduler.onNetworkChanged(NetworkType.METERED);
+        scheduler.onActivity("message received");
+
+        assertNull(scheduler.getSyncRequest());
+        assertEquals(SyncScheduler.MIN_INTERVAL, scheduler.getInterval());
+        assertFalse(scheduler.onPeriodicSync());
+    }
+
+}
@@ -0,0 +1,78 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.RestMethod;
+
+import static edu.stevens.cs522.chat.rest.codec.SyncDownloads.CHATROOMS;
+import static edu.stevens.cs522.chat.rest.codec.SyncDownloads.MESSAGES;
+import static edu.stevens.cs522.chat.rest.codec.SyncDownloads.PEERS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Payload size (plain and gzipped) and encode/decode time of each synchronization wire format,
+ * for a large download, on the device.  The first round of each warms up the runtime and is not
+ * counted.  Results are in the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncCodecBenchmark {
+
+    private static final String TAG = SyncCodecBenchmark.class.getCanonicalName();
+
+    private static final int ROUNDS = 5;
+
+    private static int gzippedSize(byte[] bytes) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(os)) {
+            gzip.write(bytes);
+        }
+        return os.size();
+    }
+
+    @Test
+    public void payloadSizeAndTiming() throws IOException {
+        Gson gson = new RestMethod(null).getGson();
+        List<Peer> peers = TestData.peers(PEERS);
+        List<Chatroom> chatrooms = TestData.chatrooms(CHATROOMS);
+        List<Message> messages = TestData.messages(MESSAGES, PEERS);
+
+        for (SyncCodec codec : new SyncCodec[] { new JsonSyncCodec(gson), new BinarySyncCodec() }) {
+            byte[] bytes = SyncDownloads.download(codec, gson, peers, chatrooms, messages);
+
+            long encodeTime = 0, decodeTime = 0;
+            for (int round = 0; round <= ROUNDS; round++) {
+                long start = System.nanoTime();
+                SyncDownloads.upload(codec, chatrooms, messages);
+                long encoded = System.nanoTime();
+                SyncDownloads.Decoded decoded = SyncDownloads.decode(codec, bytes);
+                long finished = System.nanoTime();
+                assertEquals(MESSAGES, decoded.messages.size());
+                if (round > 0) {
+                    encodeTime += encoded - start;
+                    decodeTime += finished - encoded;
+                }
+            }
+
+            Log.i(TAG, String.format("%s: %d messages, %d bytes (%d gzipped), encode %.1f ms, decode %.1f ms.",
+                    codec.getMediaType(), MESSAGES, bytes.length, gzippedSize(bytes),
+                    encodeTime / 1e6 / ROUNDS, decodeTime / 1e6 / ROUNDS));
+        }
+    }
+
+}
@@ -10,8 +10,12 @@
 **********************************************************************/
 package edu.stevens.cs522.chat.activities;
 
+import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ResultReceiver;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -22,6 +26,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
+import java.lang.ref.WeakReference;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -31,6 +36,7 @@ import edu.stevens.cs522.chat.databases.ChatroomDao;
 import edu.stevens.cs522.chat.dialog.SendMessage;
 import edu.stevens.cs522.chat.entities.Chatroom;
 import edu.stevens.cs522.chat.rest.ChatHelper;
+import edu.stevens.cs522.chat.rest.PostMessageBatcher;
 import edu.stevens.cs522.chat.settings.Settings;
 import edu.stevens.cs522.chat.viewmodels.SharedViewModel;
 
@@ -73,6 +79,40 @@ public class ChatActivity extends AppCompatActivity implements ChatroomsFragment
 
     private ChatroomDao chatroomDao;
 
+    /*
+     * Called back (on the main thread) when a message has been posted, saved for the next sync,
+     * or sending it failed.  The batcher may hold the receiver until the server responds, so it
+     * only holds the activity weakly, and says nothing once the activity is gone.
+     */
+    private static class PostResultReceiver extends ResultReceiver {
+
+        private final WeakReference<ChatActivity> activity;
+
+        private PostResultReceiver(ChatActivity activity) {
+            super(new Handler(Looper.getMainLooper()));
+            this.activity = new WeakReference<>(activity);
+        }
+
+        @Override
+        protected void onReceiveResult(int resultCode, Bundle resultData) {
+            ChatActivity chatActivity = activity.get();
+            if (chatActivity == null || chatActivity.isDestroyed()) {
+                return;
+            }
+            int text;
+            if (resultCode == Activity.RESULT_OK) {
+                text = R.string.post_success;
+            } else if (resultCode == PostMessageBatcher.RESULT_SAVED) {
+                text = R.string.post_saved;
+            } else {
+                text = R.string.post_failed;
+            }
+            Toast.makeText(chatActivity, text, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private final ResultReceiver postResultReceiver = new PostResultReceiver(this);
+
     /*
 	 * Called when the activity is first created. 
 	 */
@@ -119,6 +159,9 @@ public class ChatActivity extends AppCompatActivity implements ChatroomsFragment
         super.onStart();
         chatHelper = new ChatHelper(ChatActivity.this);
         chatHelper.startMessageSync();
+        chatHelper.startChatSocket();
+        chatHelper.drainOutbox();
+        chatHelper.requestSync();
     }
 	public void onResume() {super.onResume();}
 
@@ -126,6 +169,7 @@ public class ChatActivity extends AppCompatActivity implements ChatroomsFragment
 
     public void onStop() {
         super.onStop();
+        chatHelper.stopChatSocket();
         chatHelper.stopMessageSync();
     }
 
@@ -175,6 +219,16 @@ public class ChatActivity extends AppCompatActivity implements ChatroomsFragment
             startActivity(intent);
             return true;
 
+        } else if (itemId == R.id.search) {
+            // Search the selected chatroom, or all messages if none is selected
+            Intent intent = new Intent(this, SearchActivity.class);
+            Chatroom chatroom = sharedViewModel.getSelected();
+            if (chatroom != null) {
+                intent.putExtra(SearchActivity.CHATROOM_KEY, chatroom.name);
+            }
+            startActivity(intent);
+            return true;
+
         }
         return false;
     }
@@ -203,7 +257,7 @@ public class ChatActivity extends AppCompatActivity implements ChatroomsFragment
      */
     public void send(String chatroom, String message) {
         // TODO send the message
-        chatHelper.postMessage(chatroom, message);
+        chatHelper.postMessage(chatroom, message, postResultReceiver);
 
         Log.i(TAG, "Sent message: " + message);
     }
@@ -20,22 +20,19 @@ import android.widget.TextView;
 
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagingData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import edu.stevens.cs522.chat.R;
 import edu.stevens.cs522.chat.entities.Chatroom;
 import edu.stevens.cs522.chat.entities.Message;
 import edu.stevens.cs522.chat.settings.Settings;
-import edu.stevens.cs522.chat.ui.MessageAdapter;
-import edu.stevens.cs522.chat.ui.MessageSenderAdapter;
+import edu.stevens.cs522.chat.ui.MessagePagingAdapter;
+import edu.stevens.cs522.chat.ui.MessageSenderPagingAdapter;
 import edu.stevens.cs522.chat.viewmodels.ChatViewModel;
 import edu.stevens.cs522.chat.viewmodels.SharedViewModel;
 
@@ -62,7 +59,10 @@ public class MessagesFragment extends Fragment implements OnClickListener {
     private SharedViewModel sharedViewModel;
 
     // Display list of messages in a chatroom (with senders identified in message headings)
-    private MessageAdapter messagesAdapter;
+    private MessagePagingAdapter messagesAdapter;
+
+    // Pages of messages for the current chatroom selection
+    private LiveData<PagingData<Message>> messages;
 
 
     public MessagesFragment() {
@@ -103,10 +103,13 @@ public class MessagesFragment extends Fragment implements OnClickListener {
          * Widget for list of messages
          */
         RecyclerView messageList = rootView.findViewById(R.id.message_list);
-        messageList.setLayoutManager(new LinearLayoutManager(requireActivity()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(requireActivity());
+        // Open the chatroom at the newest messages, loading older pages on scrolling up
+        layoutManager.setStackFromEnd(true);
+        messageList.setLayoutManager(layoutManager);
 
         // TODO Initialize the recyclerview and adapter for messages
-        messagesAdapter = new MessageSenderAdapter();
+        messagesAdapter = new MessageSenderPagingAdapter();
         messageList.setAdapter(messagesAdapter);
 
          return rootView;
@@ -132,21 +135,21 @@ public class MessagesFragment extends Fragment implements OnClickListener {
         String header = getString(R.string.messages_heading, Settings.getChatName(requireActivity()), chatroomName);
         messagesHeader.setText(header);
 
+        // Stop displaying pages for the previous chatroom selection
+        if (messages != null) {
+            messages.removeObservers(getViewLifecycleOwner());
+            messages = null;
+        }
+
         if (chatroom == null) {
-            messagesAdapter.setMessages(new ArrayList<>(0));
-            messagesAdapter.notifyItemRangeChanged(0, 1);
+            messagesAdapter.submitData(getViewLifecycleOwner().getLifecycle(), PagingData.empty());
             return;
         }
 
         // TODO query the database asynchronously, and use messagesAdapter to display the result
-        LiveData<List<Message>> messages = chatViewModel.fetchAllMessages(chatroom);
-
-        Observer<List<Message>> observer = messg -> {
-            messagesAdapter.setMessages(messg);
-            messagesAdapter.notifyDataSetChanged();
-        };
-
-        messages.observe(getViewLifecycleOwner(), observer);
+        messages = chatViewModel.fetchMessages(chatroom);
+        messages.observe(getViewLifecycleOwner(),
+                pages -> messagesAdapter.submitData(getViewLifecycleOwner().getLifecycle(), pages));
     }
 
 	public void onResume() {
@@ -0,0 +1,88 @@
+package edu.stevens.cs522.chat.activities;
+
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import edu.stevens.cs522.chat.R;
+import edu.stevens.cs522.chat.databases.MessageSearchPagingSource;
+import edu.stevens.cs522.chat.ui.MessageChatroomPagingAdapter;
+import edu.stevens.cs522.chat.ui.MessagePagingAdapter;
+import edu.stevens.cs522.chat.ui.MessageSenderPagingAdapter;
+import edu.stevens.cs522.chat.viewmodels.SearchViewModel;
+
+/**
+ * Full-text search of message history, in a chatroom (CHATROOM_KEY), from a peer (PEER_KEY),
+ * or over all messages (neither).
+ */
+
+public class SearchActivity extends FragmentActivity {
+
+    public static final String TAG = SearchActivity.class.getCanonicalName();
+
+    public static final String CHATROOM_KEY = "chatroom";
+
+    public static final String PEER_KEY = "peer";
+
+    private MessagePagingAdapter messageAdapter;
+
+    private SearchViewModel searchViewModel;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.search);
+
+        String chatroom = getIntent().getStringExtra(CHATROOM_KEY);
+        String peer = getIntent().getStringExtra(PEER_KEY);
+
+        searchViewModel = new ViewModelProvider(this).get(SearchViewModel.class);
+
+        TextView heading = findViewById(R.id.search_heading);
+        if (chatroom != null) {
+            // Results are all in the same chatroom, so identify the sender
+            searchViewModel.setScope(MessageSearchPagingSource.Scope.CHATROOM, chatroom);
+            heading.setText(getString(R.string.search_chatroom_heading, chatroom));
+            messageAdapter = new MessageSenderPagingAdapter();
+        } else if (peer != null) {
+            searchViewModel.setScope(MessageSearchPagingSource.Scope.PEER, peer);
+            heading.setText(getString(R.string.search_peer_heading, peer));
+            messageAdapter = new MessageChatroomPagingAdapter();
+        } else {
+            searchViewModel.setScope(MessageSearchPagingSource.Scope.ALL, null);
+            heading.setText(R.string.search_all_heading);
+            messageAdapter = new MessageChatroomPagingAdapter();
+        }
+
+        RecyclerView messageList = findViewById(R.id.message_list);
+        messageList.setLayoutManager(new LinearLayoutManager(this));
+        messageList.setAdapter(messageAdapter);
+
+        searchViewModel.getResults().observe(this, pages -> messageAdapter.submitData(getLifecycle(), pages));
+
+        // Search as the user types (the view model ignores repeats of the same text)
+        EditText searchText = findViewById(R.id.search_text);
+        searchText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchViewModel.search(s.toString());
+            }
+        });
+    }
+
+}
@@ -2,18 +2,30 @@ package edu.stevens.cs522.chat.databases;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.stevens.cs522.chat.entities.Chatroom;
 import edu.stevens.cs522.chat.entities.DateConverter;
 import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.MessageFts;
+import edu.stevens.cs522.chat.entities.Outbox;
 import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.entities.SyncState;
 import edu.stevens.cs522.chat.entities.UUIDConverter;
+import edu.stevens.cs522.chat.settings.Settings;
 
 /**
  * Created by dduggan.
@@ -22,13 +34,29 @@ import edu.stevens.cs522.chat.entities.UUIDConverter;
  */
 
 // TODO Add annotations (including @TypeConverters)
-@Database(entities = {Peer.class, Chatroom.class, Message.class}, version = 1)
+@Database(entities = {Peer.class, Chatroom.class, Message.class, SyncState.class, Outbox.class, MessageFts.class}, version = 7)
 @TypeConverters(DateConverter.class)
 public abstract class ChatDatabase extends RoomDatabase {
 
     private static final String DATABASE_NAME = "messages.db";
 
-    private static ChatDatabase instance;
+    private static volatile ChatDatabase instance;
+
+    /*
+     * Threads for queries (LiveData, ListenableFuture and paging), which may run concurrently
+     * in WAL mode, and a single thread for transactions (there is only one writer anyway).
+     */
+    private static final int QUERY_THREADS = 4;
+
+    private static ExecutorService newExecutor(String name, int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> new Thread(runnable, name + "-" + count.incrementAndGet());
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+
+    private static final Executor QUERY_EXECUTOR = newExecutor("db-query", QUERY_THREADS);
+
+    private static final Executor TRANSACTION_EXECUTOR = newExecutor("db-transaction", 1);
 
     public abstract PeerDao peerDao();
 
@@ -38,11 +66,148 @@ public abstract class ChatDatabase extends RoomDatabase {
 
     public abstract RequestDao requestDao();
 
+    public abstract OutboxDao outboxDao();
+
+    public abstract SearchDao searchDao();
+
+    /*
+     * The single row of sync state.
+     */
+    private static final String INSERT_SYNC_STATE =
+            "INSERT OR IGNORE INTO `SyncState` (`id`, `lastSequenceNumber`, `lastUploadedMessageId`, `lastSyncedChatroomId`, `chatroomVersion`) " +
+            "VALUES (" + SyncState.ID + ", (SELECT IFNULL(MAX(`seqNum`), 0) FROM `Message`), 0, 0, NULL)";
+
+    /*
+     * Version 2: sync state table (replaces scanning for the largest sequence number),
+     * and an index on sequence number (for finding unsent messages).
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `SyncState` (`id` INTEGER NOT NULL, `lastSequenceNumber` INTEGER NOT NULL, " +
+                    "`lastUploadedMessageId` INTEGER NOT NULL, `lastSyncedChatroomId` INTEGER NOT NULL, `chatroomVersion` TEXT, PRIMARY KEY(`id`))");
+            db.execSQL(INSERT_SYNC_STATE);
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Message_seqNum` ON `Message` (`seqNum`)");
+        }
+    };
+
+    /*
+     * Version 3: outbox of messages waiting to be posted to the server.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `Outbox` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `messageId` INTEGER NOT NULL, " +
+                    "`status` TEXT, `attempts` INTEGER NOT NULL, " +
+                    "FOREIGN KEY(`messageId`) REFERENCES `Message`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_Outbox_messageId` ON `Outbox` (`messageId`)");
+        }
+    };
+
+    /*
+     * Version 4: tag for conditional sync.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `SyncState` ADD COLUMN `syncTag` TEXT");
+        }
+    };
+
+    /*
+     * Version 5: index for paging through the messages in a chatroom.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Message_chatroom_id` ON `Message` (`chatroom`, `id`)");
+        }
+    };
+
+    /*
+     * Version 6: indices for the messages in a chatroom and from a sender, in order.
+     * The index on (sender, timestamp) replaces the index on sender.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_Message_sender`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Message_sender_timestamp` ON `Message` (`sender`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Message_chatroom_seqNum_timestamp` ON `Message` (`chatroom`, `seqNum`, `timestamp`)");
+        }
+    };
+
+    /*
+     * Let FTS merge index segments incrementally as messages are inserted, rather than in
+     * occasional large merges (which would otherwise land in the middle of a bulk sync).
+     */
+    private static final String FTS_AUTOMERGE =
+            "INSERT INTO `MessageFts`(`MessageFts`) VALUES('automerge=8')";
+
+    /*
+     * Version 7: full-text index over message text.  These are the table and content
+     * sync triggers that Room generates for MessageFts, and the index is built from the
+     * existing messages.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `MessageFts` USING FTS4(`messageText` TEXT, content=`Message`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_MessageFts_BEFORE_UPDATE BEFORE UPDATE ON `Message` " +
+                    "BEGIN DELETE FROM `MessageFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_MessageFts_BEFORE_DELETE BEFORE DELETE ON `Message` " +
+                    "BEGIN DELETE FROM `MessageFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_MessageFts_AFTER_UPDATE AFTER UPDATE ON `Message` " +
+                    "BEGIN INSERT INTO `MessageFts`(`docid`, `messageText`) VALUES (NEW.`rowid`, NEW.`messageText`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_MessageFts_AFTER_INSERT AFTER INSERT ON `Message` " +
+                    "BEGIN INSERT INTO `MessageFts`(`docid`, `messageText`) VALUES (NEW.`rowid`, NEW.`messageText`); END");
+            db.execSQL("INSERT INTO `MessageFts`(`MessageFts`) VALUES('rebuild')");
+            db.execSQL(FTS_AUTOMERGE);
+        }
+    };
+
+    private static final Callback CALLBACK = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL(INSERT_SYNC_STATE);
+            db.execSQL(FTS_AUTOMERGE);
+        }
+    };
+
     public static ChatDatabase getInstance(Context context) {
-        if (instance == null) {
-            instance = Room.databaseBuilder(context, ChatDatabase.class, DATABASE_NAME).build();
+        ChatDatabase result = instance;
+        if (result == null) {
+            synchronized (ChatDatabase.class) {
+                result = instance;
+                if (result == null) {
+                    Context appContext = context.getApplicationContext();
+                    instance = result = build(appContext, DATABASE_NAME, Settings.getDatabaseProfile(appContext));
+                }
+            }
         }
-        return instance;
+        return result;
+    }
+
+    /*
+     * Also used by tests and benchmarks, with their own database file (in memory if the name is null).
+     */
+    static ChatDatabase build(Context context, String name, final DatabaseProfile profile) {
+        Builder<ChatDatabase> builder = name != null
+                ? Room.databaseBuilder(context, ChatDatabase.class, name)
+                : Room.inMemoryDatabaseBuilder(context, ChatDatabase.class);
+        return builder
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7)
+                .addCallback(CALLBACK)
+                .addCallback(new Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        profile.configure(db);
+                    }
+                })
+                .setJournalMode(profile.journalMode)
+                .setQueryExecutor(QUERY_EXECUTOR)
+                .setTransactionExecutor(TRANSACTION_EXECUTOR)
+                .build();
     }
 
-}
\ No newline at end of file
+}
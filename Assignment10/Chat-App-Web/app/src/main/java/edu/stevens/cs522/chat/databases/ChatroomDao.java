@@ -31,10 +31,22 @@ public abstract class ChatroomDao {
     @Query("SELECT * FROM Chatroom")
     public abstract List<Chatroom> getAllChatrooms();
 
+    /*
+     * Chatrooms added since the last sync with the server (synchronous)
+     */
+    @Query("SELECT * FROM Chatroom WHERE id > :afterId ORDER BY id")
+    public abstract List<Chatroom> getChatroomsAfter(long afterId);
+
     /*
      * Insert a chatroom, ignore conflict if it already occurs
      */
     @Insert(onConflict = OnConflictStrategy.IGNORE)
     public abstract void insert(Chatroom chatroom);
 
+    /*
+     * Insert a batch of chatrooms (synchronous), ignoring those already in the database
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract void insert(List<Chatroom> chatrooms);
+
 }
@@ -0,0 +1,66 @@
+package edu.stevens.cs522.chat.databases;
+
+import android.util.Log;
+
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQLite configuration for the chat database, chosen in settings (and applied when the
+ * database is next opened).
+ *
+ * DEFAULT leaves journal mode, synchronous level and page cache to Room and the platform.
+ * TUNED uses write-ahead logging, so that queries from the UI run concurrently with sync
+ * transactions, with synchronous=NORMAL (the WAL is synced at checkpoints rather than on
+ * every commit: the database stays consistent, but power loss may roll back the last
+ * transactions, which sync would download again) and a larger page cache.
+ */
+public enum DatabaseProfile {
+
+    DEFAULT(RoomDatabase.JournalMode.AUTOMATIC, null, 0),
+
+    TUNED(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING, "NORMAL", -8192);
+
+    private static final String TAG = DatabaseProfile.class.getCanonicalName();
+
+    public final RoomDatabase.JournalMode journalMode;
+
+    // Value for PRAGMA synchronous, or null for the platform default
+    public final String synchronous;
+
+    // Value for PRAGMA cache_size (negative is in KiB, positive in pages), or 0 for the default
+    public final int cacheSize;
+
+    DatabaseProfile(RoomDatabase.JournalMode journalMode, String synchronous, int cacheSize) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+    }
+
+    /*
+     * These pragmas are per connection.  Room runs the open callback on the connection it
+     * writes with, which is where synchronous matters; in WAL mode read connections are
+     * opened by the platform with its own defaults.
+     */
+    void configure(SupportSQLiteDatabase db) {
+        if (synchronous != null) {
+            db.query("PRAGMA synchronous = " + synchronous).close();
+        }
+        if (cacheSize != 0) {
+            db.query("PRAGMA cache_size = " + cacheSize).close();
+        }
+        Log.i(TAG, "Opened database with profile " + name());
+    }
+
+    public static DatabaseProfile parse(String name) {
+        if (name != null) {
+            for (DatabaseProfile profile : values()) {
+                if (profile.name().equals(name)) {
+                    return profile;
+                }
+            }
+        }
+        return TUNED;
+    }
+
+}
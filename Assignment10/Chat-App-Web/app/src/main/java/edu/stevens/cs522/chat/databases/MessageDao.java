@@ -8,6 +8,9 @@ import androidx.room.Query;
 import androidx.room.Transaction;
 import androidx.room.Update;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.Date;
 import java.util.List;
 
 import edu.stevens.cs522.chat.entities.Chatroom;
@@ -18,11 +21,46 @@ import edu.stevens.cs522.chat.entities.Peer;
 @Dao
 public interface MessageDao {
 
-    @Query("select * from message WHERE chatroom = :chatroom")
-    public abstract LiveData<List<Message>> fetchAllMessages(String chatroom);
-    @Query("SELECT * FROM message WHERE sender = :peerName")
+    /*
+     * Messages in a chatroom after, or before (newest first), a server sequence number, in the
+     * order assigned by the server (using the index on chatroom, seqNum, timestamp).  Unsent
+     * messages (seqNum 0) have no place in that order, so they are never included.
+     */
+    @Query("SELECT * FROM Message WHERE chatroom = :chatroom AND seqNum > :seqNum AND seqNum > 0 ORDER BY seqNum, timestamp LIMIT :limit")
+    public ListenableFuture<List<Message>> fetchMessagesAfterSeqNum(String chatroom, long seqNum, int limit);
+
+    @Query("SELECT * FROM Message WHERE chatroom = :chatroom AND seqNum < :seqNum AND seqNum > 0 ORDER BY seqNum DESC, timestamp DESC LIMIT :limit")
+    public ListenableFuture<List<Message>> fetchMessagesBeforeSeqNum(String chatroom, long seqNum, int limit);
+
+    /*
+     * Keyset paging through the messages in a chatroom (in order of primary key), using the
+     * index on (chatroom, id): the page after a message, and the page before it (newest first).
+     */
+    @Query("SELECT * FROM Message WHERE chatroom = :chatroom AND id > :afterId ORDER BY id LIMIT :limit")
+    public ListenableFuture<List<Message>> fetchMessagesAfter(String chatroom, long afterId, int limit);
+
+    @Query("SELECT * FROM Message WHERE chatroom = :chatroom AND id < :beforeId ORDER BY id DESC LIMIT :limit")
+    public ListenableFuture<List<Message>> fetchMessagesBefore(String chatroom, long beforeId, int limit);
 
+    /*
+     * Messages from a sender, in order of timestamp (using the index on sender, timestamp).
+     * Timestamps are not unique, so the primary key (the last column of every index) breaks ties.
+     */
+    @Query("SELECT * FROM Message WHERE sender = :peerName ORDER BY timestamp, id")
     public LiveData<List<Message>> fetchMessagesFromPeer(String peerName);
+
+    /*
+     * Keyset paging through the messages from a sender: the page after a message, and the page
+     * before it (newest first), keyed on its (timestamp, id).
+     */
+    @Query("SELECT * FROM Message WHERE sender = :peerName AND (timestamp > :timestamp OR (timestamp = :timestamp AND id > :id)) " +
+            "ORDER BY timestamp, id LIMIT :limit")
+    public ListenableFuture<List<Message>> fetchMessagesFromPeerAfter(String peerName, Date timestamp, long id, int limit);
+
+    @Query("SELECT * FROM Message WHERE sender = :peerName AND (timestamp < :timestamp OR (timestamp = :timestamp AND id < :id)) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    public ListenableFuture<List<Message>> fetchMessagesFromPeerBefore(String peerName, Date timestamp, long id, int limit);
+
     @Insert(onConflict = OnConflictStrategy.IGNORE)
     public void persist(Message message);
 
@@ -0,0 +1,113 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.stevens.cs522.chat.entities.Message;
+
+/**
+ * Pages of the messages in a chatroom, keyed by message primary key (keyset paging, rather
+ * than LIMIT/OFFSET, so the cost of a page does not depend on how far into the chatroom it is).
+ *
+ * The initial load is the newest page, or the window around the key of the last visible
+ * message when the source is invalidated (a message was added or updated).  Pages before
+ * and after are loaded as the user scrolls.
+ */
+public class MessagePagingSource extends ListenableFuturePagingSource<Long, Message> {
+
+    private final ChatDatabase chatDatabase;
+
+    private final MessageDao messageDao;
+
+    private final String chatroom;
+
+    // The observer is added on the first load, so a source that is never loaded does not leak
+    private final AtomicBoolean observing = new AtomicBoolean();
+
+    public MessagePagingSource(ChatDatabase chatDatabase, String chatroom) {
+        this.chatDatabase = chatDatabase;
+        this.messageDao = chatDatabase.messageDao();
+        this.chatroom = chatroom;
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Long, Message>> loadFuture(@NonNull LoadParams<Long> params) {
+        if (observing.compareAndSet(false, true)) {
+            WeakInvalidationObserver.observe(chatDatabase.getInvalidationTracker(), this, "Message");
+        }
+        final int loadSize = params.getLoadSize();
+        final Long key = params.getKey();
+
+        if (params instanceof LoadParams.Append) {
+            return Futures.transform(messageDao.fetchMessagesAfter(chatroom, key, loadSize),
+                    after -> page(Collections.emptyList(), after, loadSize, true, after.size() == loadSize),
+                    MoreExecutors.directExecutor());
+
+        } else if (params instanceof LoadParams.Prepend) {
+            return Futures.transform(messageDao.fetchMessagesBefore(chatroom, key, loadSize),
+                    before -> page(before, Collections.emptyList(), loadSize, before.size() == loadSize, true),
+                    MoreExecutors.directExecutor());
+
+        } else if (key == null) {
+            // Open the chatroom at the newest messages.
+            return Futures.transform(messageDao.fetchMessagesBefore(chatroom, Long.MAX_VALUE, loadSize),
+                    before -> page(before, Collections.emptyList(), loadSize, before.size() == loadSize, false),
+                    MoreExecutors.directExecutor());
+
+        } else {
+            // Reload the window around the message that was visible.
+            final ListenableFuture<List<Message>> beforeFuture = messageDao.fetchMessagesBefore(chatroom, key + 1, loadSize / 2);
+            final ListenableFuture<List<Message>> afterFuture = messageDao.fetchMessagesAfter(chatroom, key, loadSize / 2);
+            return Futures.whenAllSucceed(beforeFuture, afterFuture).call(() -> {
+                List<Message> before = Futures.getDone(beforeFuture);
+                List<Message> after = Futures.getDone(afterFuture);
+                return page(before, after, loadSize, before.size() == loadSize / 2, after.size() == loadSize / 2);
+            }, MoreExecutors.directExecutor());
+        }
+    }
+
+    /*
+     * A page from messages before the key (newest first) and after it (oldest first).
+     */
+    private LoadResult<Long, Message> page(List<Message> before, List<Message> after, int loadSize,
+                                           boolean morePrevious, boolean moreNext) {
+        List<Message> messages = new ArrayList<>(before.size() + after.size());
+        for (int i = before.size() - 1; i >= 0; i--) {
+            messages.add(before.get(i));
+        }
+        messages.addAll(after);
+        if (messages.isEmpty()) {
+            return new LoadResult.Page<>(messages, null, null);
+        }
+        Long prevKey = morePrevious ? messages.get(0).id : null;
+        Long nextKey = moreNext ? messages.get(messages.size() - 1).id : null;
+        return new LoadResult.Page<>(messages, prevKey, nextKey);
+    }
+
+    /*
+     * After invalidation, reload around the message closest to the visible position.
+     */
+    @Nullable
+    @Override
+    public Long getRefreshKey(@NonNull PagingState<Long, Message> state) {
+        Integer anchorPosition = state.getAnchorPosition();
+        if (anchorPosition == null) {
+            return null;
+        }
+        Message message = state.closestItemToPosition(anchorPosition);
+        return message != null ? message.id : null;
+    }
+
+}
@@ -0,0 +1,132 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.stevens.cs522.chat.entities.Message;
+
+/**
+ * Pages of the hits for a full-text search, in a chatroom, from a peer, or over all messages.
+ *
+ * Hits are ranked, so (unlike MessagePagingSource) pages are keyed by offset into the results:
+ * the key for the previous page is the offset where the current page starts, and the key for
+ * the next page is the offset where the current page ends.
+ */
+public class MessageSearchPagingSource extends ListenableFuturePagingSource<Integer, Message> {
+
+    public enum Scope {
+        CHATROOM,
+        PEER,
+        ALL
+    }
+
+    private final ChatDatabase chatDatabase;
+
+    private final SearchDao searchDao;
+
+    private final String query;
+
+    private final Scope scope;
+
+    private final String name;
+
+    // The observer is added on the first load, so a source that is never loaded does not leak
+    private final AtomicBoolean observing = new AtomicBoolean();
+
+    /*
+     * The name is the chatroom or peer name, depending on scope (null for ALL).
+     */
+    public MessageSearchPagingSource(ChatDatabase chatDatabase, String text, Scope scope, String name) {
+        this.chatDatabase = chatDatabase;
+        this.searchDao = chatDatabase.searchDao();
+        this.query = toMatchQuery(text);
+        this.scope = scope;
+        this.name = name;
+    }
+
+    /**
+     * Translate the text entered by the user into an FTS match expression: every word must
+     * appear, as a prefix of a word in the message.  Anything other than letters and digits
+     * is dropped, so user input cannot produce a malformed match expression.  Returns null
+     * if there are no words to search for.
+     */
+    public static String toMatchQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(word).append('*');
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Integer, Message>> loadFuture(@NonNull LoadParams<Integer> params) {
+        if (observing.compareAndSet(false, true)) {
+            WeakInvalidationObserver.observe(chatDatabase.getInvalidationTracker(), this, "Message");
+        }
+        final int key = params.getKey() != null ? params.getKey() : 0;
+        final int offset;
+        final int loadSize;
+        if (params instanceof LoadParams.Prepend) {
+            // Load the hits that end where the previous page starts.
+            offset = Math.max(0, key - params.getLoadSize());
+            loadSize = key - offset;
+        } else {
+            offset = key;
+            loadSize = params.getLoadSize();
+        }
+
+        if (query == null) {
+            return Futures.immediateFuture(new LoadResult.Page<>(new ArrayList<>(0), null, null));
+        }
+
+        ListenableFuture<List<Message>> hits;
+        switch (scope) {
+            case CHATROOM:
+                hits = searchDao.searchChatroom(query, name, loadSize, offset);
+                break;
+            case PEER:
+                hits = searchDao.searchPeer(query, name, loadSize, offset);
+                break;
+            default:
+                hits = searchDao.searchAll(query, loadSize, offset);
+                break;
+        }
+
+        return Futures.transform(hits, messages -> {
+            Integer prevKey = offset > 0 ? offset : null;
+            Integer nextKey = messages.size() == loadSize ? offset + messages.size() : null;
+            return new LoadResult.Page<>(messages, prevKey, nextKey);
+        }, MoreExecutors.directExecutor());
+    }
+
+    @Nullable
+    @Override
+    public Integer getRefreshKey(@NonNull PagingState<Integer, Message> state) {
+        Integer anchorPosition = state.getAnchorPosition();
+        if (anchorPosition == null) {
+            return null;
+        }
+        return Math.max(0, anchorPosition - state.getConfig().initialLoadSize / 2);
+    }
+
+}
@@ -0,0 +1,119 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Outbox;
+
+@Dao
+/**
+ * The outbox of messages waiting to be posted to the server, drained in order by a single worker.
+ * These are synchronous operations, used on a background thread.
+ */
+public abstract class OutboxDao {
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    protected abstract List<Long> insertMessages(List<Message> messages);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    protected abstract List<Long> insertEntries(List<Outbox> entries);
+
+    /**
+     * Add messages to the local database and queue them to be sent, in a single transaction.
+     * Returns the outbox row ids.
+     */
+    @Transaction
+    public List<Long> enqueue(List<Message> messages) {
+        List<Long> messageIds = insertMessages(messages);
+        List<Outbox> entries = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).id = messageIds.get(i);
+            entries.add(new Outbox(messageIds.get(i)));
+        }
+        return insertEntries(entries);
+    }
+
+    /**
+     * The next batch of messages to send, in the order they were queued.
+     */
+    @Query("SELECT Message.* FROM Outbox JOIN Message ON Message.id = Outbox.messageId " +
+            "WHERE Outbox.status = 'PENDING' ORDER BY Outbox.id LIMIT :limit")
+    public abstract List<Message> getPendingMessages(int limit);
+
+    /**
+     * The number of messages still to be sent (not counting those that have failed).
+     */
+    @Query("SELECT COUNT(*) FROM Outbox WHERE status != 'FAILED'")
+    public abstract int count();
+
+    @Query("SELECT COUNT(*) FROM Outbox WHERE status = 'FAILED'")
+    public abstract int countFailed();
+
+    /**
+     * Record an attempt to send these messages.
+     */
+    @Query("UPDATE Outbox SET status = 'SENDING', attempts = attempts + 1 WHERE messageId IN (:messageIds)")
+    public abstract void markSending(List<Long> messageIds);
+
+    /**
+     * Requeue messages whose send failed, or was interrupted (e.g. the app was killed).
+     */
+    @Query("UPDATE Outbox SET status = 'PENDING' WHERE status = 'SENDING'")
+    public abstract void resetSending();
+
+    /**
+     * Requeue messages left sending, except those still waiting for an acknowledgement
+     * (e.g. over the chat socket): a send interrupted by the app being killed is retried.
+     */
+    @Query("UPDATE Outbox SET status = 'PENDING' WHERE status = 'SENDING' AND messageId NOT IN (:messageIds)")
+    public abstract void resetSendingExcept(List<Long> messageIds);
+
+    /**
+     * Requeue these messages, e.g. if the server did not acknowledge them in time.
+     */
+    @Query("UPDATE Outbox SET status = 'PENDING' WHERE status = 'SENDING' AND messageId IN (:messageIds)")
+    public abstract void resetSending(List<Long> messageIds);
+
+    /**
+     * Stop sending messages that have already been sent too often (e.g. the server keeps
+     * rejecting them), so that they do not hold up the rest of the outbox forever.
+     */
+    @Query("UPDATE Outbox SET status = 'FAILED' WHERE status = 'PENDING' AND attempts >= :maxAttempts")
+    public abstract void abandon(int maxAttempts);
+
+    /**
+     * Give messages that were abandoned another round of attempts (e.g. in a new session).
+     * They keep their place in the outbox, so messages are still sent in order.
+     */
+    @Query("UPDATE Outbox SET status = 'PENDING', attempts = 0 WHERE status = 'FAILED'")
+    public abstract int retryFailed();
+
+    @Query("UPDATE Message SET seqNum = :seqNum WHERE id = :id")
+    protected abstract void updateSeqNum(long id, long seqNum);
+
+    @Query("DELETE FROM Outbox WHERE messageId = :messageId")
+    protected abstract void delete(long messageId);
+
+    /**
+     * The server has accepted these messages: update their sequence numbers and remove them
+     * from the outbox, in a single transaction (the sequence numbers are in message order).
+     */
+    @Transaction
+    public void complete(List<Message> messages, List<Long> seqNums) {
+        if (seqNums.size() != messages.size()) {
+            throw new IllegalArgumentException(String.format("%d sequence numbers for %d messages.", seqNums.size(), messages.size()));
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            updateSeqNum(messages.get(i).id, seqNums.get(i));
+            delete(messages.get(i).id);
+        }
+    }
+
+}
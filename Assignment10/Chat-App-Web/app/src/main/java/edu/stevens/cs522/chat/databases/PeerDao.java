@@ -12,7 +12,11 @@ import androidx.room.Update;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.stevens.cs522.chat.entities.Peer;
 
@@ -26,6 +30,36 @@ public abstract class PeerDao {
 
     private static final String TAG = PeerDao.class.getCanonicalName();
 
+    /*
+     * Write-through cache of the peers most recently upserted, by name, so that a message
+     * from a known peer does not need a query for its primary key, and does not need an
+     * update if the peer's metadata has not changed meaningfully.  The cache holds the state
+     * last written to the database, and is bounded (least recently used peers are evicted).
+     * Room creates one instance of the DAO per database, so the cache is shared by all users.
+     * A peer found in the cache is not checked against the database, so a caller that upserts
+     * a peer in a transaction that is rolled back must invalidate the cache.
+     */
+    private static final int MAX_CACHED_PEERS = 500;
+
+    // Don't update last seen for a peer if it has changed by less than this (milliseconds)
+    private static final long TIMESTAMP_THRESHOLD = 60 * 1000;
+
+    // Don't update location for a peer if it has moved less than this (degrees, about 10m)
+    private static final double LOCATION_THRESHOLD = 1e-4;
+
+    private final Map<String, Peer> cache = new LinkedHashMap<String, Peer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Peer> eldest) {
+            return size() > MAX_CACHED_PEERS;
+        }
+    };
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private final AtomicLong skippedUpdates = new AtomicLong();
+
     /**
      * Get all peers in the database.
      * @return
@@ -60,9 +94,10 @@ public abstract class PeerDao {
     /**
      * Update the metadata for a peer (GPS coordinates, last seen)
      * @param peer
+     * @return number of rows updated
      */
     @Update
-    protected abstract void update(Peer peer);
+    protected abstract int update(Peer peer);
 
     @Transaction
     /**
@@ -72,14 +107,118 @@ public abstract class PeerDao {
      * between search and insert
      */
     public long upsert(Peer peer) {
-        // TODO
+        Peer cached = getCached(peer.name);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            peer.id = cached.id;
+            if (!isChanged(cached, peer)) {
+                skippedUpdates.incrementAndGet();
+                return peer.id;
+            }
+            if (update(peer) > 0) {
+                putCached(peer);
+                return peer.id;
+            }
+            // The peer is no longer in the database (e.g. the insert was rolled back)
+            invalidateCache(peer.name);
+        } else {
+            cacheMisses.incrementAndGet();
+        }
+
         long id = getPeerId(peer.name);
-        if (id == 0){
-            insert(peer);
+        if (id == 0) {
+            peer.id = 0;
+            id = insert(peer);
         } else {
             peer.id = id;
             update(peer);
         }
-        return id;
+        if (id > 0) {
+            peer.id = id;
+            putCached(peer);
+        }
+        return peer.id;
+    }
+
+    /**
+     * Upsert a batch of peers downloaded from the server, in a single transaction.
+     * @param peers
+     */
+    @Transaction
+    public void upsert(List<Peer> peers) {
+        for (Peer peer : peers) {
+            upsert(peer);
+        }
+    }
+
+    private Peer getCached(String name) {
+        synchronized (cache) {
+            return cache.get(name);
+        }
+    }
+
+    private void putCached(Peer peer) {
+        Peer cached = new Peer();
+        cached.id = peer.id;
+        cached.name = peer.name;
+        cached.timestamp = peer.timestamp;
+        cached.latitude = peer.latitude;
+        cached.longitude = peer.longitude;
+        synchronized (cache) {
+            cache.put(peer.name, cached);
+        }
+    }
+
+    /*
+     * Is the new metadata for a peer different enough from that in the database to update?
+     */
+    private static boolean isChanged(Peer cached, Peer peer) {
+        if (peer.timestamp != null && (cached.timestamp == null ||
+                Math.abs(peer.timestamp.getTime() - cached.timestamp.getTime()) >= TIMESTAMP_THRESHOLD)) {
+            return true;
+        }
+        return isMoved(cached.latitude, peer.latitude) || isMoved(cached.longitude, peer.longitude);
+    }
+
+    private static boolean isMoved(Double before, Double after) {
+        if (before == null || after == null) {
+            return before != after;
+        }
+        return Math.abs(after - before) >= LOCATION_THRESHOLD;
+    }
+
+    /**
+     * Forget a cached peer, e.g. if the transaction that wrote it is rolled back.
+     * @param name
+     */
+    public void invalidateCache(String name) {
+        synchronized (cache) {
+            cache.remove(name);
+        }
+    }
+
+    /**
+     * Forget all cached peers, e.g. after a failed transaction, or if peers are deleted.
+     */
+    public void invalidateCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Hit rate of the peer cache, for diagnostics.
+     * @return
+     */
+    public String getCacheStats() {
+        long hits = cacheHits.get();
+        long misses = cacheMisses.get();
+        long lookups = hits + misses;
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return String.format(Locale.US, "peer cache: size=%d hits=%d misses=%d hit rate=%.1f%% skipped updates=%d",
+                size, hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, skippedUpdates.get());
     }
 }
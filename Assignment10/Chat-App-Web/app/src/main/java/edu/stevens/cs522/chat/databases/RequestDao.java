@@ -5,6 +5,7 @@ import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import java.util.List;
@@ -13,6 +14,7 @@ import java.util.UUID;
 import edu.stevens.cs522.chat.entities.Chatroom;
 import edu.stevens.cs522.chat.entities.Message;
 import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.entities.SyncState;
 
 @Dao
 /**
@@ -21,16 +23,41 @@ import edu.stevens.cs522.chat.entities.Peer;
 public abstract class RequestDao {
 
     /**
-     * Get the last sequence number in the messages database.
+     * Get the progress of synchronization with the server.
      */
-    @Query("SELECT MAX(seqNum) AS max_seq_num FROM Message WHERE seqNum <> 0")
-    public abstract long getLastSequenceNumber();
+    @Query("SELECT * FROM SyncState WHERE id = " + SyncState.ID)
+    public abstract SyncState getSyncState();
 
     /**
-     * Get all unsent messages, identified by sequence number = 0.
+     * Advance the last sequence number downloaded (in the same transaction as the download).
      */
-    @Query("SELECT * FROM Message WHERE seqNum = 0")
-    public abstract List<Message> getUnsentMessages();
+    @Query("UPDATE SyncState SET lastSequenceNumber = MAX(lastSequenceNumber, :seqNum) WHERE id = " + SyncState.ID)
+    protected abstract void advanceLastSequenceNumber(long seqNum);
+
+    /**
+     * Record the last local message accepted by the server.
+     */
+    @Query("UPDATE SyncState SET lastUploadedMessageId = :messageId WHERE id = " + SyncState.ID)
+    public abstract void saveLastUploadedMessageId(long messageId);
+
+    /**
+     * Record the last local chatroom uploaded, and the version of the server chatroom list.
+     */
+    @Query("UPDATE SyncState SET lastSyncedChatroomId = :chatroomId, chatroomVersion = :chatroomVersion WHERE id = " + SyncState.ID)
+    public abstract void saveChatroomSync(long chatroomId, String chatroomVersion);
+
+    /**
+     * Record the tag for the server state, once we have downloaded everything up to it.
+     */
+    @Query("UPDATE SyncState SET syncTag = :syncTag WHERE id = " + SyncState.ID)
+    public abstract void saveSyncTag(String syncTag);
+
+    /**
+     * Get the next page of unsent messages (sequence number = 0), after the message with the
+     * given primary key, so the upload to the server can stream them in chunks.
+     */
+    @Query("SELECT * FROM Message WHERE seqNum = 0 AND id > :afterId ORDER BY id LIMIT :limit")
+    public abstract List<Message> getUnsentMessages(long afterId, int limit);
 
     /**
      * After syncing with server, update the sequence numbers of uploaded messages
@@ -41,21 +68,42 @@ public abstract class RequestDao {
     @Insert(onConflict = OnConflictStrategy.IGNORE)
     public abstract long insert(Message message);
 
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract List<Long> insert(List<Message> messages);
+
     @Update
     protected abstract void update(Message message);
 
+    @Query("SELECT EXISTS(SELECT 1 FROM Message WHERE seqNum = :seqNum)")
+    protected abstract boolean hasSeqNum(long seqNum);
+
     /**
-     * Insert other peer's messages and update our own, with input from server.
+     * Insert other peer's messages and update our own, with input from server.  A message may
+     * already have been received over the chat socket, in which case it is not inserted again.
      */
     public void upsert(UUID appID, Message message) {
         if (appID.equals(message.appID)) {
             // One of our own messages returned from the server, update sequenceId
             update(message);
-        } else {
+        } else if (message.seqNum == 0 || !hasSeqNum(message.seqNum)) {
             // Another peer's message, with sequenceId set by server
             message.id = 0;
             insert(message);
         }
     }
 
+    /**
+     * Upsert a batch of messages downloaded from the server, in a single transaction that
+     * also checkpoints the last sequence number downloaded.
+     */
+    @Transaction
+    public void upsert(UUID appID, List<Message> messages) {
+        long lastSeqNum = 0;
+        for (Message message : messages) {
+            upsert(appID, message);
+            lastSeqNum = Math.max(lastSeqNum, message.seqNum);
+        }
+        advanceLastSequenceNumber(lastSeqNum);
+    }
+
 }
@@ -0,0 +1,38 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+
+import edu.stevens.cs522.chat.entities.Message;
+
+/**
+ * Full-text search over message history, using the FTS index rather than scanning the text
+ * of every message.  FTS4 has no built-in ranking function, so hits are ranked by the number
+ * of matching terms (from offsets()), then newest first.  The query is an FTS match
+ * expression (see MessageSearchPagingSource.toMatchQuery()).
+ */
+@Dao
+public interface SearchDao {
+
+    String RANK = "(length(offsets(MessageFts)) - length(replace(offsets(MessageFts), ' ', '')) + 1) / 4";
+
+    @Query("SELECT Message.* FROM Message JOIN MessageFts ON Message.id = MessageFts.rowid " +
+            "WHERE MessageFts MATCH :query AND Message.chatroom = :chatroom " +
+            "ORDER BY " + RANK + " DESC, Message.timestamp DESC LIMIT :limit OFFSET :offset")
+    public ListenableFuture<List<Message>> searchChatroom(String query, String chatroom, int limit, int offset);
+
+    @Query("SELECT Message.* FROM Message JOIN MessageFts ON Message.id = MessageFts.rowid " +
+            "WHERE MessageFts MATCH :query AND Message.sender = :peerName " +
+            "ORDER BY " + RANK + " DESC, Message.timestamp DESC LIMIT :limit OFFSET :offset")
+    public ListenableFuture<List<Message>> searchPeer(String query, String peerName, int limit, int offset);
+
+    @Query("SELECT Message.* FROM Message JOIN MessageFts ON Message.id = MessageFts.rowid " +
+            "WHERE MessageFts MATCH :query " +
+            "ORDER BY " + RANK + " DESC, Message.timestamp DESC LIMIT :limit OFFSET :offset")
+    public ListenableFuture<List<Message>> searchAll(String query, int limit, int offset);
+
+}
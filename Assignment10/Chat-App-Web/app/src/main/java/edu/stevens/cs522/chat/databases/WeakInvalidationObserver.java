@@ -0,0 +1,50 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagingSource;
+import androidx.room.InvalidationTracker;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+
+/**
+ * Invalidates a paging source when its tables change.  The invalidation tracker holds its
+ * observers strongly, so this only holds the paging source weakly: a source that is dropped
+ * without being invalidated (e.g. its view model was cleared) can be collected, and the
+ * observer then removes itself on the next change.
+ */
+class WeakInvalidationObserver extends InvalidationTracker.Observer {
+
+    private final InvalidationTracker tracker;
+
+    private final WeakReference<PagingSource<?, ?>> source;
+
+    WeakInvalidationObserver(InvalidationTracker tracker, PagingSource<?, ?> source, String... tables) {
+        super(tables);
+        this.tracker = tracker;
+        this.source = new WeakReference<>(source);
+    }
+
+    /**
+     * Start observing, until the source is invalidated.
+     */
+    static void observe(InvalidationTracker tracker, PagingSource<?, ?> source, String... tables) {
+        final WeakInvalidationObserver observer = new WeakInvalidationObserver(tracker, source, tables);
+        tracker.addObserver(observer);
+        source.registerInvalidatedCallback(() -> {
+            tracker.removeObserver(observer);
+            return null;
+        });
+    }
+
+    @Override
+    public void onInvalidated(@NonNull Set<String> tables) {
+        PagingSource<?, ?> pagingSource = source.get();
+        if (pagingSource == null) {
+            tracker.removeObserver(this);
+        } else {
+            pagingSource.invalidate();
+        }
+    }
+
+}
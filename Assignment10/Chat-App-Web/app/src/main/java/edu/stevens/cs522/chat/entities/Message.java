@@ -21,9 +21,12 @@ import edu.stevens.cs522.base.DateUtils;
 // TODO annotate (including FK constraints)
 // You must also declare indices on the FK columns, otherwise integrity checking
 // may trigger a linear search of this table.
+// The index on seqNum makes finding unsent messages (seqNum = 0) proportional to the outbox.
+// The composite indices serve the messages in a chatroom, or from a sender, in order without
+// a sort (the index on sender and timestamp also serves the FK constraint on sender).
 
 
-@Entity(foreignKeys = @ForeignKey(entity = Peer.class, parentColumns = "name", childColumns = "sender"), indices = {@Index(value = {"sender"})})
+@Entity(foreignKeys = @ForeignKey(entity = Peer.class, parentColumns = "name", childColumns = "sender"), indices = {@Index(value = {"sender", "timestamp"}), @Index(value = {"seqNum"}), @Index(value = {"chatroom", "id"}), @Index(value = {"chatroom", "seqNum", "timestamp"})})
 public class Message implements Parcelable {
 
     // TODO annotate
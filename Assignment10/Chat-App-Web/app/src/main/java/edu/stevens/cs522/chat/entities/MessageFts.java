@@ -0,0 +1,19 @@
+package edu.stevens.cs522.chat.entities;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index over the text of messages.  This is an external content FTS4 table: the
+ * text is stored only in the Message table, and Room generates triggers that keep the index
+ * in step with inserts, updates and deletes of messages.  The docid (rowid) of an entry is
+ * the primary key of the message.
+ */
+
+@Fts4(contentEntity = Message.class)
+@Entity
+public class MessageFts {
+
+    public String messageText;
+
+}
@@ -0,0 +1,46 @@
+package edu.stevens.cs522.chat.entities;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A message waiting to be posted to the chat server (when not using SYNC).  Rows are
+ * drained in primary key order, so messages are sent in the order they were posted.
+ */
+
+@Entity(foreignKeys = @ForeignKey(entity = Message.class, parentColumns = "id", childColumns = "messageId", onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = {"messageId"}, unique = true)})
+public class Outbox {
+
+    public enum Status {
+        // Waiting to be sent
+        PENDING,
+        // Sent, waiting for the server response
+        SENDING,
+        // Not accepted after too many attempts, no longer sent
+        FAILED
+    }
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    // Primary key of the message in the local database
+    public long messageId;
+
+    public Status status;
+
+    // Number of times we have tried to send the message
+    public int attempts;
+
+    public Outbox() { }
+
+    @Ignore
+    public Outbox(long messageId) {
+        this.messageId = messageId;
+        this.status = Status.PENDING;
+    }
+
+}
@@ -0,0 +1,35 @@
+package edu.stevens.cs522.chat.entities;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * For SYNC: the progress of synchronization with the chat server.  There is a single row in
+ * this table, which is updated in the same transactions that apply downloads from the server.
+ */
+
+@Entity
+public class SyncState {
+
+    // There is only ever one row, with this primary key
+    public static final long ID = 1;
+
+    @PrimaryKey
+    public long id;
+
+    // Largest sequence number of a message downloaded from the server
+    public long lastSequenceNumber;
+
+    // Primary key of the last local message accepted by the server
+    public long lastUploadedMessageId;
+
+    // Primary key of the last local chatroom uploaded to the server
+    public long lastSyncedChatroomId;
+
+    // Version of the server chatroom list last downloaded
+    public String chatroomVersion;
+
+    // Tag (ETag) for the server state as of the last complete sync, sent when we have nothing to upload
+    public String syncTag;
+
+}
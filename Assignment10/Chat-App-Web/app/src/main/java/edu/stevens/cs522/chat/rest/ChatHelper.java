@@ -2,17 +2,12 @@ package edu.stevens.cs522.chat.rest;
 
 import android.content.Context;
 import android.net.Uri;
-import android.os.Bundle;
+import android.os.ResultReceiver;
 import android.util.Log;
 
 import edu.stevens.cs522.base.DateUtils;
-import edu.stevens.cs522.base.work.OneTimeWorkRequest;
-import edu.stevens.cs522.base.work.PeriodicWorkRequest;
-import edu.stevens.cs522.base.work.WorkManager;
 import edu.stevens.cs522.chat.entities.Message;
 import edu.stevens.cs522.chat.location.CurrentLocation;
-import edu.stevens.cs522.chat.rest.work.PostMessageWorker;
-import edu.stevens.cs522.chat.rest.work.SynchronizeWorker;
 import edu.stevens.cs522.chat.services.RegisterService;
 import edu.stevens.cs522.chat.settings.Settings;
 
@@ -25,17 +20,20 @@ public class ChatHelper {
 
     private static final String TAG = ChatHelper.class.getCanonicalName();
 
-    public static final int SYNC_INTERVAL = 1;
-
     private final Context context;
 
-    private final WorkManager workManager;
-
     private final CurrentLocation location;
 
+    /*
+     * Background sync is shared by all helpers (e.g. an activity being recreated may start it
+     * again before the old one stops it), so it runs while any of them has started it.
+     */
+    private static int syncUsers;
+
+    private boolean syncStarted;
+
     public ChatHelper(Context context) {
         this.context = context;
-        this.workManager = WorkManager.getInstance(context);
         this.location = new CurrentLocation(context);
     }
 
@@ -50,6 +48,14 @@ public class ChatHelper {
     }
 
     public void postMessage(String chatRoom, String messageText) {
+        postMessage(chatRoom, messageText, null);
+    }
+
+    /*
+     * The receiver is called back once the message has been posted (or saved for the next sync,
+     * or sending it has failed).
+     */
+    public void postMessage(String chatRoom, String messageText, ResultReceiver receiver) {
         if (messageText != null && !messageText.isEmpty()) {
             Log.d(TAG, "Posting message: "+messageText);
             Message mesg = new Message();
@@ -61,52 +67,93 @@ public class ChatHelper {
             mesg.longitude = location.getLongitude();
             mesg.sender = Settings.getChatName(context);
 
-            Bundle data = new Bundle();
-            data.putParcelable(PostMessageWorker.MESSAGE_KEY, mesg);
-
             /*
-             * TODO enqueue a request with workManager to post this message
-
              * Depending on Settings.SYNC, message will be sent immediately, or just added locally
              * and eventually synchronized with server database.  The request processor
-             * is where either of these will be done.
+             * is where either of these will be done.  Messages posted in quick succession
+             * are enqueued as a single request.
             */
 
-            OneTimeWorkRequest request = new OneTimeWorkRequest(PostMessageWorker.class, data);
-            workManager.enqueueUniqueWork(request);
+            PostMessageBatcher.getInstance(context).add(mesg, receiver);
 
         }
     }
 
-    private PeriodicWorkRequest syncRequest;
+    /*
+     * Send any messages left in the outbox from an earlier session, including those that failed
+     * to send (no-op if Settings.SYNC == true).
+     */
+    public void drainOutbox() {
+        PostMessageBatcher.getInstance(context).retry();
+    }
 
-    public void startMessageSync() {
-        if (Settings.SYNC) {
-            Log.d(TAG, "Enabling background synchronization of message database.");
+    /*
+     * Keep a chat socket open while in the foreground, if the server supports it.
+     */
+    public void startChatSocket() {
+        Uri serverUri = Settings.getServerUri(context);
+        if (Settings.isRegistered(context) && serverUri != null && Settings.isSocketEnabled(context, serverUri)) {
+            ChatSocket.getInstance(context).start();
+        }
+    }
 
-            if (syncRequest != null) {
-                throw new IllegalStateException("Trying to schedule sync when it is already scheduled!");
-            }
+    public void stopChatSocket() {
+        ChatSocket.getInstance(context).stop();
+    }
 
-            // TODO schedule periodic synchronization with message database
-            Bundle data = null;
-            syncRequest = new PeriodicWorkRequest(SynchronizeWorker.class, data, SYNC_INTERVAL);
-            workManager.enqueuePeriodicUniqueWork(syncRequest);
+    /*
+     * Synchronize soon, e.g. when the app comes to the foreground (no-op if Settings.SYNC == false).
+     */
+    public void requestSync() {
+        SyncTrigger.getInstance(context).requestSync("requested by app");
+    }
 
+    public void startMessageSync() {
+        if (Settings.SYNC) {
+            synchronized (ChatHelper.class) {
+                if (syncStarted) {
+                    return;
+                }
+                syncStarted = true;
+                if (syncUsers++ > 0) {
+                    Log.d(TAG, "Background synchronization already enabled, users: " + syncUsers);
+                    return;
+                }
+
+                Log.d(TAG, "Enabling background synchronization of message database.");
+
+                // Periodic synchronization with the message database, at an interval that
+                // adapts to chat activity and the network.
+                SyncScheduler.getInstance(context).start();
+
+                // Changes are pushed from the server while we are in the foreground, if it supports that.
+                Uri serverUri = Settings.getServerUri(context);
+                if (serverUri != null && Settings.isPushEnabled(context, serverUri)) {
+                    PushChannel.getInstance(context).start();
+                }
+            }
         }
     }
 
     public void stopMessageSync() {
         if (Settings.SYNC) {
-            Log.d(TAG, "Canceling background synchronization of message database.");
-
-            if (syncRequest == null) {
-                throw new IllegalStateException("Trying to cancel sync when it is not scheduled!");
+            synchronized (ChatHelper.class) {
+                if (!syncStarted) {
+                    return;
+                }
+                syncStarted = false;
+                if (--syncUsers > 0) {
+                    Log.d(TAG, "Background synchronization still in use, users: " + syncUsers);
+                    return;
+                }
+
+                Log.d(TAG, "Canceling background synchronization of message database.");
+
+                PushChannel.getInstance(context).stop();
+
+                // Cancel periodic synchronization with the message database
+                SyncScheduler.getInstance(context).stop();
             }
-
-            // TODO cancel periodic synchronization with message database
-            workManager.enqueuePeriodicUniqueWork(syncRequest);
-
         }
     }
 
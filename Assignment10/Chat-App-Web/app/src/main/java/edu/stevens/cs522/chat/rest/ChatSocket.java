@@ -0,0 +1,374 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.client.SocketFrame;
+import edu.stevens.cs522.chat.settings.Settings;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * A WebSocket connection to the chat server, kept open while the app is in the foreground,
+ * over which new messages are sent and other peers' messages are received as they are posted.
+ *
+ * Received messages are written with the same upsert as the sync download, but do not advance
+ * the sync checkpoint: after every (re)connect, a REST sync (or, without SYNC, a drain of the
+ * outbox) reconciles anything missed while the socket was down, and the upsert ignores
+ * messages we already have.
+ *
+ * A message sent over the socket is in flight until the server acknowledges it.  If there is
+ * no ack within a timeout, it is sent again over REST (or, with SYNC, uploaded by the next
+ * sync), and while it is in flight the sync upload leaves it out, so it is not posted twice.
+ * With SYNC, a new message is marked in flight before it is committed, so that a sync never
+ * sees it as unsent and not in flight between its commit and its send.
+ */
+public class ChatSocket extends WebSocketListener {
+
+    private static final String TAG = ChatSocket.class.getCanonicalName();
+
+    /*
+     * Reconnection delays (ms), doubling after each failed attempt.
+     */
+    private static final long MIN_RECONNECT_DELAY = 1000;
+
+    private static final long MAX_RECONNECT_DELAY = 5 * 60 * 1000;
+
+    private static final int NORMAL_CLOSURE = 1000;
+
+    private static final int HTTP_NOT_FOUND = 404;
+
+    /*
+     * How long to wait (ms) for the server to acknowledge a message sent over the socket.
+     */
+    private static final long ACK_TIMEOUT = 30 * 1000;
+
+    private static ChatSocket instance;
+
+    private final Context context;
+
+    private final ChatDatabase chatDatabase;
+
+    private final RestMethod restMethod;
+
+    private final Gson gson;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private WebSocket webSocket;
+
+    private boolean running;
+
+    private volatile boolean connected;
+
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    // Messages sent but not yet acknowledged, by primary key, with the time they were sent
+    private final Map<Long,Long> inFlight = new ConcurrentHashMap<>();
+
+    private ChatSocket(Context context) {
+        this.context = context;
+        this.chatDatabase = ChatDatabase.getInstance(context);
+        this.restMethod = RequestProcessor.getInstance(context).getRestMethod();
+        this.gson = restMethod.getGson();
+    }
+
+    public static synchronized ChatSocket getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatSocket(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Is the socket currently open?
+     */
+    public static boolean isConnected() {
+        ChatSocket socket = instance;
+        return socket != null && socket.connected;
+    }
+
+    /**
+     * Has this message been sent over the socket, and not yet acknowledged?
+     */
+    public static boolean isInFlight(long messageId) {
+        ChatSocket socket = instance;
+        return socket != null && socket.inFlight.containsKey(messageId);
+    }
+
+    /**
+     * The messages sent over the socket and not yet acknowledged (a snapshot).
+     */
+    public static List<Long> getInFlight() {
+        ChatSocket socket = instance;
+        return socket == null ? new ArrayList<>() : new ArrayList<>(socket.inFlight.keySet());
+    }
+
+    /**
+     * For SYNC: mark messages in flight while they are being saved (before they are committed),
+     * if the socket is open.  They are then either sent, or released if they cannot be.
+     */
+    public static void reserve(List<Message> messages) {
+        ChatSocket socket = instance;
+        if (socket != null) {
+            socket.reserveMessages(messages);
+        }
+    }
+
+    /**
+     * For SYNC: messages that were reserved, but will not be sent over the socket after all.
+     */
+    public static void release(List<Message> messages) {
+        ChatSocket socket = instance;
+        if (socket != null) {
+            socket.releaseMessages(messages);
+        }
+    }
+
+    private synchronized void reserveMessages(List<Message> messages) {
+        if (connected && webSocket != null) {
+            long now = System.currentTimeMillis();
+            for (Message message : messages) {
+                inFlight.put(message.id, now);
+            }
+        }
+    }
+
+    private void releaseMessages(List<Message> messages) {
+        for (Message message : messages) {
+            inFlight.remove(message.id);
+        }
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            Log.d(TAG, "Starting chat socket.");
+            running = true;
+            connect();
+        }
+    }
+
+    public synchronized void stop() {
+        if (running) {
+            Log.d(TAG, "Stopping chat socket.");
+            running = false;
+            connected = false;
+            if (webSocket != null) {
+                webSocket.close(NORMAL_CLOSURE, null);
+                webSocket = null;
+            }
+        }
+    }
+
+    private synchronized void connect() {
+        if (running && webSocket == null) {
+            webSocket = restMethod.openWebSocket(this);
+        }
+    }
+
+    private synchronized void reconnect(WebSocket failed) {
+        if (webSocket != failed) {
+            return;
+        }
+        webSocket = null;
+        connected = false;
+        if (running) {
+            Log.d(TAG, "Reconnecting chat socket in " + reconnectDelay + "ms.");
+            scheduler.schedule(this::connect, reconnectDelay, TimeUnit.MILLISECONDS);
+            reconnectDelay = Math.min(2 * reconnectDelay, MAX_RECONNECT_DELAY);
+        }
+    }
+
+    /**
+     * Send messages (already saved in the local database) in order.  Returns false if the
+     * socket is down, in which case the caller falls back to REST.
+     */
+    public synchronized boolean send(List<Message> messages) {
+        if (!connected || webSocket == null) {
+            releaseMessages(messages);
+            return false;
+        }
+        for (Message message : messages) {
+            inFlight.put(message.id, System.currentTimeMillis());
+            if (!webSocket.send(gson.toJson(new SocketFrame(SocketFrame.POST, message)))) {
+                // The socket is closing, the caller resends all of them.
+                releaseMessages(messages);
+                return false;
+            }
+        }
+        scheduler.schedule(this::checkAcks, ACK_TIMEOUT, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /*
+     * Send again (over REST, or with the next sync) any messages the server has not acknowledged
+     * in time, although the socket is still connected.
+     */
+    private void checkAcks() {
+        long expired = System.currentTimeMillis() - ACK_TIMEOUT;
+        List<Long> messageIds = new ArrayList<>();
+        for (Map.Entry<Long,Long> entry : inFlight.entrySet()) {
+            if (entry.getValue() <= expired && inFlight.remove(entry.getKey(), entry.getValue())) {
+                messageIds.add(entry.getKey());
+            }
+        }
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        Log.w(TAG, "No ack for " + messageIds.size() + " messages sent over the chat socket.");
+        if (Settings.SYNC) {
+            SyncTrigger.getInstance(context).requestSync("chat socket ack timeout");
+        } else {
+            chatDatabase.outboxDao().resetSending(messageIds);
+            PostMessageBatcher.getInstance(context).drain();
+        }
+    }
+
+    @Override
+    public void onOpen(@NonNull WebSocket webSocket, @NonNull Response response) {
+        Log.d(TAG, "Chat socket connected.");
+        synchronized (this) {
+            if (webSocket != this.webSocket) {
+                return;
+            }
+            connected = true;
+            reconnectDelay = MIN_RECONNECT_DELAY;
+        }
+        reconcile();
+    }
+
+    @Override
+    public void onMessage(@NonNull WebSocket webSocket, @NonNull String text) {
+        SocketFrame frame;
+        try {
+            frame = gson.fromJson(text, SocketFrame.class);
+        } catch (JsonParseException e) {
+            Log.w(TAG, "Ignoring invalid frame: " + text, e);
+            return;
+        }
+        if (frame == null || frame.type == null) {
+            return;
+        }
+        switch (frame.type) {
+            case SocketFrame.MESSAGE:
+                if (frame.message != null) {
+                    receive(frame.message);
+                }
+                break;
+            case SocketFrame.ACK:
+                acknowledge(frame.id, frame.seqNum);
+                break;
+            default:
+                Log.d(TAG, "Ignoring frame: " + frame.type);
+                break;
+        }
+    }
+
+    /*
+     * Add another peer's message, or update one of our own, as in the sync download.  The
+     * sender may not have been downloaded yet, so they are added first (for the foreign key).
+     */
+    private void receive(final Message message) {
+        final UUID appID = Settings.getAppId(context);
+        SyncScheduler.getInstance(context).onActivity("message received");
+        final Peer sender = new Peer();
+        sender.name = message.sender;
+        sender.timestamp = message.timestamp;
+        sender.latitude = message.latitude;
+        sender.longitude = message.longitude;
+        try {
+            chatDatabase.runInTransaction(() -> {
+                chatDatabase.peerDao().upsert(sender);
+                chatDatabase.chatroomDao().insert(new Chatroom(message.chatroom));
+                chatDatabase.requestDao().upsert(appID, message);
+            });
+        } catch (RuntimeException e) {
+            // The peer cache may hold the sender written in the transaction that was rolled back.
+            chatDatabase.peerDao().invalidateCache(sender.name);
+            throw e;
+        }
+    }
+
+    /*
+     * Record the sequence number of a message we posted, and remove it from the outbox.
+     */
+    private void acknowledge(long messageId, long seqNum) {
+        inFlight.remove(messageId);
+        Message message = new Message();
+        message.id = messageId;
+        chatDatabase.outboxDao().complete(Collections.singletonList(message), Collections.singletonList(seqNum));
+        PostMessageBatcher.getInstance(context).completed(Collections.singletonList(message));
+    }
+
+    @Override
+    public void onClosing(@NonNull WebSocket webSocket, int code, @NonNull String reason) {
+        webSocket.close(NORMAL_CLOSURE, null);
+    }
+
+    @Override
+    public void onClosed(@NonNull WebSocket webSocket, int code, @NonNull String reason) {
+        Log.d(TAG, "Chat socket closed: " + code + " " + reason);
+        disconnected(webSocket);
+    }
+
+    @Override
+    public void onFailure(@NonNull WebSocket webSocket, @NonNull Throwable t, Response response) {
+        Log.w(TAG, "Chat socket failed.", t);
+        if (response != null && response.code() == HTTP_NOT_FOUND) {
+            Log.w(TAG, "Chat server does not support the chat socket, falling back to REST.");
+            Settings.saveSocketEnabled(context, Settings.getServerUri(context), false);
+            synchronized (this) {
+                running = false;
+            }
+        }
+        disconnected(webSocket);
+    }
+
+    /*
+     * Anything posted but not acknowledged is sent again over REST, in order (or with SYNC,
+     * uploaded by the next sync).
+     */
+    private void disconnected(WebSocket webSocket) {
+        reconnect(webSocket);
+        boolean unacknowledged = !inFlight.isEmpty();
+        inFlight.clear();
+        if (!Settings.SYNC) {
+            chatDatabase.outboxDao().resetSending();
+            PostMessageBatcher.getInstance(context).drain();
+        } else if (unacknowledged) {
+            SyncTrigger.getInstance(context).requestSync("chat socket closed");
+        }
+    }
+
+    /*
+     * After a (re)connect, catch up on anything missed while the socket was down.
+     */
+    private void reconcile() {
+        if (Settings.SYNC) {
+            SyncTrigger.getInstance(context).requestSync("chat socket connected");
+        } else {
+            PostMessageBatcher.getInstance(context).drain();
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ResultReceiver;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import edu.stevens.cs522.base.work.OneTimeWorkRequest;
+import edu.stevens.cs522.base.work.WorkManager;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.rest.work.PostMessageWorker;
+import edu.stevens.cs522.chat.settings.Settings;
+
+/**
+ * Coalesces messages posted within a short window of each other (e.g. several lines pasted
+ * at once), which are saved (and added to the outbox) in a single transaction, and sent by
+ * a single drain of the outbox, rather than one request (and one HTTP call) per message.
+ *
+ * The window starts with the first message added, and is not extended by later messages,
+ * so no message waits longer than the window.  The pending batch is only touched on the
+ * main thread, and saved on a background thread.
+ *
+ * A message may be posted with a receiver, which is called back once all the messages of the
+ * batch posted with it have been accepted by the server (RESULT_OK), or as soon as sending
+ * any of them fails (RESULT_CANCELED).  With SYNC, it is called back when they are saved
+ * (RESULT_SAVED), since they are then sent by a later sync.
+ */
+public class PostMessageBatcher {
+
+    private static final String TAG = PostMessageBatcher.class.getCanonicalName();
+
+    /**
+     * Result for messages saved locally with SYNC, not yet sent to the server.
+     */
+    public static final int RESULT_SAVED = Activity.RESULT_FIRST_USER;
+
+    /*
+     * A batch is sent immediately if it reaches this size.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static PostMessageBatcher instance;
+
+    private final Context context;
+
+    private final WorkManager workManager;
+
+    private final Executor executor = Executors.newSingleThreadExecutor();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private ArrayList<Message> pending = new ArrayList<>();
+
+    // The receiver for each pending message (may be null)
+    private ArrayList<ResultReceiver> pendingReceivers = new ArrayList<>();
+
+    private final Runnable flush = this::flush;
+
+    /*
+     * The messages of a batch posted with the same receiver, that have not yet been sent.
+     */
+    private static class Callback {
+        private final ResultReceiver receiver;
+        private final Set<Long> remaining = new HashSet<>();
+        private Callback(ResultReceiver receiver) {
+            this.receiver = receiver;
+        }
+    }
+
+    // Callbacks waiting for each message id (guarded by itself)
+    private final Map<Long,Callback> callbacks = new HashMap<>();
+
+    private PostMessageBatcher(Context context) {
+        this.context = context;
+        this.workManager = WorkManager.getInstance(context);
+    }
+
+    public static synchronized PostMessageBatcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new PostMessageBatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Add a message to the current batch (called on the main thread).
+     */
+    public void add(Message message) {
+        add(message, null);
+    }
+
+    /**
+     * Add a message to the current batch, with a receiver to call back when it has been sent.
+     */
+    public void add(Message message, ResultReceiver receiver) {
+        if (Settings.SYNC) {
+            SyncScheduler.getInstance(context).onActivity("message posted");
+        }
+        pending.add(message);
+        pendingReceivers.add(receiver);
+        if (pending.size() >= MAX_BATCH_SIZE) {
+            handler.removeCallbacks(flush);
+            flush();
+        } else if (pending.size() == 1) {
+            handler.postDelayed(flush, Settings.getPostWindow(context));
+        }
+    }
+
+    /*
+     * Save the messages in the current batch, then (unless using SYNC) enqueue a drain of the outbox.
+     */
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<Message> messages = pending;
+        final List<ResultReceiver> receivers = pendingReceivers;
+        pending = new ArrayList<>();
+        pendingReceivers = new ArrayList<>();
+
+        Log.d(TAG, "Posting a batch of " + messages.size() + " messages.");
+        executor.execute(() -> {
+            try {
+                post(messages, receivers);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to post a batch of " + messages.size() + " messages.", e);
+                cancel(messages, receivers);
+            }
+        });
+    }
+
+    /*
+     * Save a batch of messages, on the executor thread.
+     */
+    private void post(List<Message> messages, List<ResultReceiver> receivers) {
+        RequestProcessor.getInstance(context).enqueue(messages);
+        // The messages now have their ids
+        List<Callback> batch = register(messages, receivers);
+        if (Settings.SYNC) {
+            // Deliver now if we can, otherwise upload them with an on-demand sync.
+            if (!ChatSocket.getInstance(context).send(messages)) {
+                SyncTrigger.getInstance(context).requestSync("messages posted");
+            }
+            // Saved messages are never lost with SYNC, but they have not been sent yet.
+            for (Callback callback : batch) {
+                forget(callback);
+                callback.receiver.send(RESULT_SAVED, null);
+            }
+        } else {
+            final long[] messageIds = new long[messages.size()];
+            for (int i = 0; i < messageIds.length; i++) {
+                messageIds[i] = messages.get(i).id;
+            }
+            handler.post(() -> drain(messageIds));
+        }
+    }
+
+    /*
+     * Saving a batch failed, before any of its receivers were called back: cancel them all.
+     */
+    private void cancel(List<Message> messages, List<ResultReceiver> receivers) {
+        Set<ResultReceiver> cancelled = new HashSet<>();
+        synchronized (callbacks) {
+            for (int i = 0; i < messages.size(); i++) {
+                ResultReceiver receiver = receivers.get(i);
+                if (receiver != null) {
+                    Callback callback = callbacks.get(messages.get(i).id);
+                    if (callback != null && callback.receiver == receiver) {
+                        forget(callback);
+                    }
+                    cancelled.add(receiver);
+                }
+            }
+        }
+        for (ResultReceiver receiver : cancelled) {
+            receiver.send(Activity.RESULT_CANCELED, null);
+        }
+    }
+
+    /*
+     * Group the messages of a batch by the receiver they were posted with.
+     */
+    private List<Callback> register(List<Message> messages, List<ResultReceiver> receivers) {
+        Map<ResultReceiver,Callback> batch = new HashMap<>();
+        synchronized (callbacks) {
+            for (int i = 0; i < messages.size(); i++) {
+                ResultReceiver receiver = receivers.get(i);
+                if (receiver != null) {
+                    Callback callback = batch.get(receiver);
+                    if (callback == null) {
+                        callback = new Callback(receiver);
+                        batch.put(receiver, callback);
+                    }
+                    callback.remaining.add(messages.get(i).id);
+                    callbacks.put(messages.get(i).id, callback);
+                }
+            }
+        }
+        return new ArrayList<>(batch.values());
+    }
+
+    private void forget(Callback callback) {
+        synchronized (callbacks) {
+            for (Long messageId : callback.remaining) {
+                callbacks.remove(messageId);
+            }
+            callback.remaining.clear();
+        }
+    }
+
+    /**
+     * The server has accepted these messages (called when they are removed from the outbox).
+     */
+    public void completed(List<Message> messages) {
+        List<Callback> done = new ArrayList<>();
+        synchronized (callbacks) {
+            for (Message message : messages) {
+                Callback callback = callbacks.remove(message.id);
+                if (callback != null) {
+                    callback.remaining.remove(message.id);
+                    if (callback.remaining.isEmpty()) {
+                        done.add(callback);
+                    }
+                }
+            }
+        }
+        for (Callback callback : done) {
+            callback.receiver.send(Activity.RESULT_OK, null);
+        }
+    }
+
+    /**
+     * Sending these messages failed (they stay in the outbox, to be sent by a later drain
+     * unless they have already been sent too often).
+     */
+    public void failed(List<Message> messages) {
+        List<Callback> failed = new ArrayList<>();
+        synchronized (callbacks) {
+            for (Message message : messages) {
+                Callback callback = callbacks.get(message.id);
+                if (callback != null) {
+                    forget(callback);
+                    failed.add(callback);
+                }
+            }
+        }
+        for (Callback callback : failed) {
+            callback.receiver.send(Activity.RESULT_CANCELED, null);
+        }
+    }
+
+    /*
+     * The work input only identifies the messages, which the worker reads from the outbox.
+     */
+    private void drain(long[] messageIds) {
+        Bundle data = new Bundle();
+        data.putLongArray(PostMessageWorker.MESSAGE_IDS_KEY, messageIds);
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest(PostMessageWorker.class, data);
+        workManager.enqueueUniqueWork(request);
+    }
+
+    /**
+     * Send any messages left in the outbox (e.g. by an earlier failure).
+     */
+    public void drain() {
+        if (!Settings.SYNC) {
+            drain(new long[0]);
+        }
+    }
+
+    /**
+     * Send any messages left in the outbox, including those that were no longer sent after
+     * failing too often (e.g. at the start of a new session).
+     */
+    public void retry() {
+        if (!Settings.SYNC) {
+            executor.execute(() -> {
+                try {
+                    RequestProcessor.getInstance(context).retryFailedMessages();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to requeue messages that failed to send.", e);
+                }
+                handler.post(() -> drain(new long[0]));
+            });
+        }
+    }
+
+}
@@ -0,0 +1,305 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+
+import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.settings.Settings;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * For SYNC: a push channel from the chat server, kept open while the app is in the foreground.
+ *
+ * The server streams Server-Sent Events (text/event-stream), sending a "messages" event with
+ * the latest sequence number when new messages are posted, and a "chatrooms" event when the
+ * list of chatrooms changes.  A long-polling server can instead respond with a single event
+ * when something changes, after which we reconnect after the minimum delay.  An event only
+ * triggers a sync if it reports something we have not yet downloaded.
+ *
+ * While the channel is connected, periodic sync is skipped unless there are local changes
+ * to upload, so it is only the fallback for when the stream is down.
+ */
+public class PushChannel {
+
+    private static final String TAG = PushChannel.class.getCanonicalName();
+
+    /*
+     * SSE fields and events.
+     */
+    private static final String EVENT_FIELD = "event";
+
+    private static final String DATA_FIELD = "data";
+
+    private static final String RETRY_FIELD = "retry";
+
+    private static final String MESSAGES_EVENT = "messages";
+
+    private static final String CHATROOMS_EVENT = "chatrooms";
+
+    /*
+     * Reconnection delays (ms), doubling after each failed attempt.
+     */
+    private static final long MIN_RECONNECT_DELAY = 1000;
+
+    private static final long MAX_RECONNECT_DELAY = 5 * 60 * 1000;
+
+    private static final int HTTP_NOT_FOUND = 404;
+
+    private static PushChannel instance;
+
+    private final Context context;
+
+    private final ChatDatabase chatDatabase;
+
+    /*
+     * The thread reading the stream.  A new thread is started for each start(), and a thread
+     * that has been stopped (and is no longer this one) exits without touching the state.  A
+     * thread that exits on its own clears it, so that the next start() starts a new one.
+     */
+    private volatile Thread thread;
+
+    private volatile boolean connected;
+
+    private Call<ResponseBody> call;
+
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    private PushChannel(Context context) {
+        this.context = context;
+        this.chatDatabase = ChatDatabase.getInstance(context);
+    }
+
+    public static synchronized PushChannel getInstance(Context context) {
+        if (instance == null) {
+            instance = new PushChannel(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Is the stream from the server currently open?
+     */
+    public static boolean isConnected() {
+        PushChannel channel = instance;
+        return channel != null && channel.connected;
+    }
+
+    public synchronized void start() {
+        if (thread == null) {
+            Log.d(TAG, "Starting push channel.");
+            reconnectDelay = MIN_RECONNECT_DELAY;
+            thread = new Thread(this::run, "push-channel");
+            thread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            Log.d(TAG, "Stopping push channel.");
+            if (call != null) {
+                call.cancel();
+                call = null;
+            }
+            thread.interrupt();
+            thread = null;
+            connected = false;
+        }
+    }
+
+    /*
+     * Is the calling thread the one reading the stream (i.e. not stopped)?
+     */
+    private boolean isRunning() {
+        return thread == Thread.currentThread();
+    }
+
+    /*
+     * Record the call being made, so that stop() can cancel it, unless we have already been stopped.
+     */
+    private synchronized boolean setCall(Call<ResponseBody> call) {
+        if (!isRunning()) {
+            return false;
+        }
+        this.call = call;
+        return true;
+    }
+
+    private synchronized void setConnected(boolean connected) {
+        if (isRunning()) {
+            this.connected = connected;
+        }
+    }
+
+    /*
+     * The thread reading the stream is exiting, unless it has already been stopped.
+     */
+    private synchronized void exited() {
+        if (isRunning()) {
+            thread = null;
+            connected = false;
+            call = null;
+        }
+    }
+
+    private static void closeErrorBody(Response<ResponseBody> response) {
+        ResponseBody errorBody = response.errorBody();
+        if (errorBody != null) {
+            errorBody.close();
+        }
+    }
+
+    private void run() {
+        try {
+            runLoop();
+        } finally {
+            exited();
+            Log.d(TAG, "Push channel stopped.");
+        }
+    }
+
+    private void runLoop() {
+        RestMethod restMethod = RequestProcessor.getInstance(context).getRestMethod();
+        boolean resync = false;
+        while (isRunning()) {
+            long lastSequenceNumber = chatDatabase.requestDao().getSyncState().lastSequenceNumber;
+            try {
+                Call<ResponseBody> call = restMethod.openEventStream(lastSequenceNumber);
+                if (!setCall(call)) {
+                    break;
+                }
+                Response<ResponseBody> response = call.execute();
+                if (!response.isSuccessful() || response.body() == null) {
+                    /*
+                     * Release the connection held by an error response before giving up on it.
+                     */
+                    closeErrorBody(response);
+                    if (response.code() == HTTP_NOT_FOUND) {
+                        Log.w(TAG, "Chat server does not support push, falling back to periodic sync.");
+                        Settings.savePushEnabled(context, Settings.getServerUri(context), false);
+                        return;
+                    }
+                    throw new IOException("Push channel failed: " + response.code() + " " + response.message());
+                }
+                try (ResponseBody body = response.body()) {
+                    setConnected(true);
+                    reconnectDelay = MIN_RECONNECT_DELAY;
+                    /*
+                     * We may have missed changes while we were disconnected.
+                     */
+                    if (resync) {
+                        requestSync();
+                        resync = false;
+                    }
+                    readEvents(body.source());
+                }
+                Log.d(TAG, "Push channel closed by server, reconnecting in " + reconnectDelay + "ms.");
+
+            } catch (IOException e) {
+                if (!isRunning()) {
+                    break;
+                }
+                Log.w(TAG, "Push channel disconnected, retrying in " + reconnectDelay + "ms.", e);
+                resync = true;
+
+            } catch (RuntimeException e) {
+                /*
+                 * E.g. no server to connect to: give up, until the channel is started again.
+                 */
+                Log.e(TAG, "Push channel failed, falling back to periodic sync.", e);
+                return;
+
+            } finally {
+                setConnected(false);
+                setCall(null);
+            }
+
+            /*
+             * Wait before every reconnect, even after a clean close (e.g. a long poll that
+             * returned at once), so a misbehaving server cannot make us spin.
+             */
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException ie) {
+                break;
+            }
+            if (resync) {
+                reconnectDelay = Math.min(2 * reconnectDelay, MAX_RECONNECT_DELAY);
+            }
+        }
+    }
+
+    /*
+     * Parse the event stream, dispatching each event when we reach the blank line that ends it.
+     */
+    private void readEvents(BufferedSource source) throws IOException {
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (isRunning() && (line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0 || event != null) {
+                    dispatch(event, data.toString());
+                }
+                event = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                // Comment, sent by the server to keep the connection alive.
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            if (EVENT_FIELD.equals(field)) {
+                event = value;
+            } else if (DATA_FIELD.equals(field)) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(value);
+            } else if (RETRY_FIELD.equals(field)) {
+                try {
+                    reconnectDelay = Math.max(MIN_RECONNECT_DELAY, Long.parseLong(value.trim()));
+                } catch (NumberFormatException e) {
+                    Log.w(TAG, "Ignoring invalid retry field: " + value);
+                }
+            }
+        }
+    }
+
+    private void dispatch(String event, String data) {
+        if (event == null || MESSAGES_EVENT.equals(event)) {
+            long seqNum;
+            try {
+                seqNum = Long.parseLong(data.trim());
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring invalid messages event: " + data);
+                return;
+            }
+            if (seqNum > chatDatabase.requestDao().getSyncState().lastSequenceNumber) {
+                requestSync();
+            }
+        } else if (CHATROOMS_EVENT.equals(event)) {
+            requestSync();
+        } else {
+            Log.d(TAG, "Ignoring push event: " + event);
+        }
+    }
+
+    /*
+     * Run an incremental sync (notifications in quick succession are collapsed into one).
+     */
+    private void requestSync() {
+        SyncTrigger.getInstance(context).requestSync("push notification");
+    }
+
+}
@@ -1,43 +1,44 @@
 package edu.stevens.cs522.chat.rest;
 
 import android.content.Context;
+import android.net.Uri;
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonToken;
-import com.google.gson.stream.JsonWriter;
-
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.stevens.cs522.base.DateUtils;
-import edu.stevens.cs522.base.StringUtils;
 import edu.stevens.cs522.chat.R;
 import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.databases.OutboxDao;
 import edu.stevens.cs522.chat.entities.Chatroom;
 import edu.stevens.cs522.chat.entities.Message;
 import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.entities.SyncState;
 import edu.stevens.cs522.chat.location.CurrentLocation;
 import edu.stevens.cs522.chat.rest.client.StreamingOutput;
 import edu.stevens.cs522.chat.rest.client.StreamingResponse;
+import edu.stevens.cs522.chat.rest.codec.SyncCodec;
+import edu.stevens.cs522.chat.rest.codec.SyncCodecs;
+import edu.stevens.cs522.chat.rest.codec.SyncDecoder;
+import edu.stevens.cs522.chat.rest.codec.SyncEncoder;
 import edu.stevens.cs522.chat.rest.request.ChatServiceRequest;
 import edu.stevens.cs522.chat.rest.request.ChatServiceResponse;
 import edu.stevens.cs522.chat.rest.request.DummyResponse;
 import edu.stevens.cs522.chat.rest.request.ErrorResponse;
 import edu.stevens.cs522.chat.rest.request.PostMessageRequest;
 import edu.stevens.cs522.chat.rest.request.PostMessageResponse;
+import edu.stevens.cs522.chat.rest.request.PostMessagesRequest;
+import edu.stevens.cs522.chat.rest.request.PostMessagesResponse;
 import edu.stevens.cs522.chat.rest.request.RegisterRequest;
 import edu.stevens.cs522.chat.rest.request.RegisterResponse;
 import edu.stevens.cs522.chat.rest.request.SynchronizeRequest;
+import edu.stevens.cs522.chat.rest.request.SynchronizeResponse;
 import edu.stevens.cs522.chat.settings.Settings;
 
 /**
@@ -56,6 +57,27 @@ public class RequestProcessor {
 
     private final ChatDatabase chatDatabase;
 
+    /*
+     * Synchronization rounds must not overlap, since each starts from the checkpoints left by the last.
+     */
+    private final Object syncLock = new Object();
+
+    /*
+     * Number of records uploaded or downloaded in the current sync run (guarded by syncLock).
+     */
+    private int syncChanges;
+
+    /*
+     * The outbox is drained by one worker at a time, so messages are sent in order.
+     */
+    private final Object outboxLock = new Object();
+
+    /*
+     * There is a single request processor for the app process, shared by all workers and
+     * services, which owns the heavyweight objects (Gson, HTTP client stubs, location).
+     */
+    private static volatile RequestProcessor instance;
+
     private RequestProcessor(Context context) {
         this.context = context;
 
@@ -67,7 +89,35 @@ public class RequestProcessor {
     }
 
     public static RequestProcessor getInstance(Context context) {
-        return new RequestProcessor(context);
+        RequestProcessor processor = instance;
+        if (processor == null) {
+            synchronized (RequestProcessor.class) {
+                processor = instance;
+                if (processor == null) {
+                    processor = new RequestProcessor(context.getApplicationContext());
+                    instance = processor;
+                }
+            }
+        }
+        return processor;
+    }
+
+    /**
+     * The REST client, shared with the push channel and the chat socket.
+     */
+    public RestMethod getRestMethod() {
+        return restMethod;
+    }
+
+    /**
+     * Release the request processor and the HTTP clients.  A later call to getInstance()
+     * will create a new request processor.
+     */
+    public static void shutdown() {
+        synchronized (RequestProcessor.class) {
+            instance = null;
+        }
+        RestMethod.shutdown();
     }
 
     /**
@@ -109,6 +159,7 @@ public class RequestProcessor {
             // TODO save the server URI, user name and sender id in settings
             Settings.saveServerUri(context, request.chatServer);
             Settings.saveChatName(context, request.chatname);
+            Settings.forgetServerCapabilities(context, request.chatServer);
 
         }
         return response;
@@ -150,11 +201,158 @@ public class RequestProcessor {
         }
     }
 
-    private final Type peerType = TypeToken.get(Peer.class).getType();
+    /**
+     * Save new messages in the local database, in a single transaction.  Unless we are using
+     * SYNC, they are also added to the outbox, and the caller should schedule drainOutbox().
+     * With SYNC, if the chat socket is open, they are reserved on it before they are committed
+     * (so a sync does not upload them too), and the caller should send them with ChatSocket.send().
+     */
+    public void enqueue(final List<Message> messages) {
+        Log.d(TAG, "Saving " + messages.size() + " messages.");
+        try {
+            chatDatabase.runInTransaction(() -> {
+                List<Chatroom> chatrooms = new ArrayList<>();
+                for (Message message : messages) {
+                    chatrooms.add(new Chatroom(message.chatroom));
+                }
+                chatDatabase.chatroomDao().insert(chatrooms);
+                if (!Settings.SYNC) {
+                    chatDatabase.outboxDao().enqueue(messages);
+                } else {
+                    // The ids identify the messages sent over the chat socket
+                    List<Long> messageIds = chatDatabase.requestDao().insert(messages);
+                    for (int i = 0; i < messages.size(); i++) {
+                        messages.get(i).id = messageIds.get(i);
+                    }
+                    ChatSocket.reserve(messages);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The ids of messages rolled back may be used again.
+            if (Settings.SYNC) {
+                ChatSocket.release(messages);
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Maximum number of messages sent from the outbox in one request.
+     */
+    private static final int OUTBOX_BATCH_SIZE = 100;
+
+    /*
+     * Messages that have been sent this many times without being accepted are not sent again.
+     */
+    private static final int MAX_SEND_ATTEMPTS = 5;
+
+    /**
+     * Send the messages in the outbox, in order and in batches, until it is empty or a send fails
+     * (later messages are not sent ahead of a failed one).  Only one drain runs at a time.
+     *
+     * If the chat socket is open, messages are sent over it, and removed from the outbox as the
+     * server acknowledges them (if the socket fails, they are requeued and sent over REST).
+     */
+    public ChatServiceResponse drainOutbox() {
+        if (Settings.SYNC) {
+            throw new IllegalStateException("Draining the outbox but SYNC flag is true!");
+        }
+
+        synchronized (outboxLock) {
+            OutboxDao outboxDao = chatDatabase.outboxDao();
+            boolean overSocket = ChatSocket.isConnected();
+            /*
+             * Messages left sending (e.g. by a drain killed with the app) are sent again, in
+             * order, unless the chat socket is still waiting for the server to acknowledge them.
+             */
+            outboxDao.resetSendingExcept(ChatSocket.getInFlight());
+            outboxDao.abandon(MAX_SEND_ATTEMPTS);
+
+            ChatServiceResponse response = new DummyResponse();
+            List<Message> messages = outboxDao.getPendingMessages(OUTBOX_BATCH_SIZE);
+            while (!messages.isEmpty()) {
+                List<Long> messageIds = new ArrayList<>(messages.size());
+                for (Message message : messages) {
+                    messageIds.add(message.id);
+                }
+                outboxDao.markSending(messageIds);
+
+                if (overSocket) {
+                    if (ChatSocket.getInstance(context).send(messages)) {
+                        messages = outboxDao.getPendingMessages(OUTBOX_BATCH_SIZE);
+                        continue;
+                    }
+                    Log.i(TAG, "Chat socket closed, sending messages over REST.");
+                    overSocket = false;
+                    outboxDao.resetSending();
+                    messages = outboxDao.getPendingMessages(OUTBOX_BATCH_SIZE);
+                    continue;
+                }
+
+                response = process(new PostMessagesRequest(messages));
+
+                /*
+                 * Messages not acknowledged by the server are requeued, to be sent again in order.
+                 */
+                outboxDao.resetSending();
+                if (!(response instanceof PostMessagesResponse)) {
+                    outboxDao.abandon(MAX_SEND_ATTEMPTS);
+                    Log.i(TAG, "Failed to send messages, " + outboxDao.count() + " left in outbox, "
+                            + outboxDao.countFailed() + " no longer sent.");
+                    PostMessageBatcher.getInstance(context).failed(messages);
+                    return response;
+                }
+                messages = outboxDao.getPendingMessages(OUTBOX_BATCH_SIZE);
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Send the messages that were abandoned after too many attempts again, from the next drain
+     * of the outbox.
+     */
+    public void retryFailedMessages() {
+        int failed = chatDatabase.outboxDao().retryFailed();
+        if (failed > 0) {
+            Log.i(TAG, "Retrying " + failed + " messages that failed to send.");
+        }
+    }
+
+    /*
+     * Post a batch of messages already saved in the local database (and in the outbox).
+     */
+    public ChatServiceResponse perform(PostMessagesRequest request) {
 
-    private final Type chatroomType = TypeToken.get(Chatroom.class).getType();
+        final List<Message> messages = request.messages;
+        Log.d(TAG, "Posting " + messages.size() + " messages.");
 
-    private final Type messageType = TypeToken.get(Message.class).getType();
+        ChatServiceResponse response = restMethod.perform(request);
+        if (response instanceof PostMessagesResponse) {
+            List<Long> seqNums = ((PostMessagesResponse) response).getMessageIds();
+            if (seqNums.size() != messages.size()) {
+                /*
+                 * We cannot tell which messages the sequence numbers are for, so none are completed.
+                 */
+                String error = String.format(Locale.US, "Server returned %d sequence numbers for %d messages.", seqNums.size(), messages.size());
+                Log.w(TAG, error);
+                return new ErrorResponse(response.httpResponseCode, ErrorResponse.Status.SERVER_ERROR, error);
+            }
+            chatDatabase.outboxDao().complete(messages, seqNums);
+            PostMessageBatcher.getInstance(context).completed(messages);
+        }
+        return response;
+    }
+
+    /*
+     * Number of unsent messages read from the database at a time during upload.
+     */
+    private static final int UPLOAD_PAGE_SIZE = 200;
+
+    /*
+     * Upper bound on the pages downloaded in one sync run, the next run continues from there.
+     */
+    private static final int MAX_SYNC_PAGES = 100;
 
     /**
      * For SYNC: perform a sync using a request manager.  These requests are
@@ -171,27 +369,106 @@ public class RequestProcessor {
             return new DummyResponse();
         }
 
-        Log.d(TAG, "Performing synchronization request.");
+        /*
+         * The server may limit the number of messages in a response, in which case we keep
+         * requesting pages (committing each one) until we have caught up, within this run.
+         */
+        request.pageSize = Settings.getSyncPageSize(context);
+
+        synchronized (syncLock) {
+            ChatServiceResponse response;
+            int pages = 0;
+            syncChanges = 0;
+            do {
+                Log.d(TAG, "Performing synchronization request, page " + pages + ".");
+                response = synchronize(request);
+                pages++;
+            } while (hasMorePages(request, response) && pages < MAX_SYNC_PAGES);
+            Log.d(TAG, chatDatabase.peerDao().getCacheStats());
 
-        StreamingResponse response = null;
+            /*
+             * Sync more often while the chat is busy, and less often while it is quiet.
+             */
+            if (!(response instanceof ErrorResponse)) {
+                SyncScheduler.getInstance(context).onSyncCompleted(syncChanges > 0);
+            }
+
+            return response;
+        }
+    }
 
-        Gson gson = restMethod.getGson();
+    /**
+     * For SYNC: are there local chatrooms or messages that have not been uploaded to the server?
+     */
+    public boolean hasLocalChanges() {
+        SyncState syncState = chatDatabase.requestDao().getSyncState();
+        return !chatDatabase.chatroomDao().getChatroomsAfter(syncState.lastSyncedChatroomId).isEmpty() ||
+                !chatDatabase.requestDao().getUnsentMessages(syncState.lastUploadedMessageId, 1).isEmpty();
+    }
+
+    /*
+     * Continue only if the server says there is more, and the page we just requested made progress.
+     */
+    private static boolean hasMorePages(SynchronizeRequest request, ChatServiceResponse response) {
+        if (response instanceof SynchronizeResponse) {
+            SynchronizeResponse syncResponse = (SynchronizeResponse) response;
+            return syncResponse.hasMore() && syncResponse.nextSequenceNumber > request.lastSequenceNumber;
+        }
+        return false;
+    }
+
+    /*
+     * Synchronize a single page: upload what the server has not seen (starting from our
+     * checkpoints), and download and commit a page of what we have not seen.
+     */
+    private ChatServiceResponse synchronize(SynchronizeRequest request) {
+
+        StreamingResponse response = null;
 
         /*
-         * We upload a list of all our chatrooms to the server.
+         * We upload only the chatrooms added locally since the last successful sync.  Chatrooms
+         * downloaded from the server are also added locally, so they are uploaded at most once more.
          */
-        final List<Chatroom> chatrooms = chatDatabase.chatroomDao().getAllChatrooms();
+        final SyncState syncState = chatDatabase.requestDao().getSyncState();
+        final long lastSyncedChatroomId = syncState.lastSyncedChatroomId;
+        final List<Chatroom> localChatrooms = chatDatabase.chatroomDao().getChatroomsAfter(lastSyncedChatroomId);
+        long lastChatroomId = lastSyncedChatroomId;
+        for (Chatroom chatroom : localChatrooms) {
+            lastChatroomId = Math.max(lastChatroomId, chatroom.id);
+        }
 
         /*
-         * Get the messages that we have not yet uploaded to the server (sequenceId = 0).
+         * The server only sends the chatrooms that have changed since this version of its list.
          */
-        final List<Message> messages = chatDatabase.requestDao().getUnsentMessages();
+        request.chatroomVersion = syncState.chatroomVersion;
 
         /*
          * The server needs the sequence number of the last message it downloaded to this device.
          * The server will download any messages it has "seen" since it last synced with this device.
          */
-        request.lastSequenceNumber = chatDatabase.requestDao().getLastSequenceNumber();
+        request.lastSequenceNumber = syncState.lastSequenceNumber;
+
+        /*
+         * Messages up to this primary key were accepted by the server in an earlier sync, even if
+         * that sync then failed before their sequence numbers were downloaded, so are not resent.
+         */
+        final long uploadCheckpoint = syncState.lastUploadedMessageId;
+        final AtomicLong lastUploadedId = new AtomicLong(uploadCheckpoint);
+
+        /*
+         * If we have nothing to upload, the server can tell us (cheaply) that nothing has
+         * changed since the last complete sync, in which case there is nothing to download.
+         */
+        boolean localChanges = !localChatrooms.isEmpty() ||
+                !chatDatabase.requestDao().getUnsentMessages(uploadCheckpoint, 1).isEmpty();
+        request.syncTag = localChanges ? null : syncState.syncTag;
+
+        /*
+         * Upload in the format the server last responded with (JSON until we know better).
+         */
+        final Uri serverUri = Settings.getServerUri(context);
+        final SyncCodecs syncCodecs = restMethod.getSyncCodecs();
+        final SyncCodec uploadCodec = syncCodecs.forMediaType(Settings.getSyncFormat(context, serverUri));
 
         try {
             /*
@@ -201,30 +478,45 @@ public class RequestProcessor {
                 @Override
                 public void write(final OutputStream os) throws IOException {
 
-                    try (JsonWriter wr = gson.newJsonWriter(new OutputStreamWriter(new BufferedOutputStream(os), RestMethod.CHARSET))) {
+                    try (SyncEncoder encoder = uploadCodec.newEncoder(os)) {
 
-                        wr.beginObject();
-
-                        wr.name(RestMethod.CHATROOMS);
-                        // Upload a list of all chatrooms.
-                        wr.beginArray();
-                        for (Chatroom chatroom : chatrooms) {
+                        // Upload a list of new chatrooms.
+                        encoder.beginChatrooms();
+                        for (Chatroom chatroom : localChatrooms) {
                             Log.d(TAG, "Uploading chatroom: "+chatroom.name);
-                            gson.toJson(chatroom, chatroomType, wr);
+                            encoder.writeChatroom(chatroom);
                         }
-                        wr.endArray();
-
-                        wr.name(RestMethod.MESSAGES);
-                        // TODO upload a list of unread messages.
-                        wr.beginArray();
-                        for(Message m : messages){
-                            gson.toJson(m, messageType, wr);
+                        encoder.endChatrooms();
+
+                        /*
+                         * Upload the messages that we have not yet uploaded to the server (sequenceId = 0).
+                         * These are read a page at a time as they are written, so the entire outbox
+                         * is never held in memory.
+                         */
+                        encoder.beginMessages();
+                        long lastId = uploadCheckpoint;
+                        List<Message> unsentMessages = chatDatabase.requestDao().getUnsentMessages(lastId, UPLOAD_PAGE_SIZE);
+                        boolean inFlight = false;
+                        while (!inFlight && !unsentMessages.isEmpty()) {
+                            for (Message m : unsentMessages) {
+                                /*
+                                 * Stop at a message still waiting for an ack over the chat socket,
+                                 * so the checkpoint stays before it, and it is uploaded by a later
+                                 * sync only if the ack never comes.
+                                 */
+                                inFlight = ChatSocket.isInFlight(m.id);
+                                if (inFlight) {
+                                    break;
+                                }
+                                encoder.writeMessage(m);
+                                lastId = m.id;
+                            }
+                            if (!inFlight) {
+                                unsentMessages = chatDatabase.requestDao().getUnsentMessages(lastId, UPLOAD_PAGE_SIZE);
+                            }
                         }
-                        wr.endArray();
-
-                        wr.endObject();
-
-                        wr.flush();
+                        encoder.endMessages();
+                        lastUploadedId.set(lastId);
 
                     }
                 }
@@ -232,73 +524,131 @@ public class RequestProcessor {
             /*
              * Connect to the server and upload messages not yet shared.
              */
-            response = restMethod.perform(request, out);
+            response = restMethod.perform(request, uploadCodec, out);
+
+            if (response.getResponse() instanceof SynchronizeResponse &&
+                    ((SynchronizeResponse) response.getResponse()).notModified) {
+                Log.d(TAG, "Nothing changed on the server since the last sync.");
+                return response.getResponse();
+            }
+
+            /*
+             * The server has accepted the upload, record our progress in case the download fails.
+             */
+            if (response.getResponse().isValid()) {
+                chatDatabase.requestDao().saveLastUploadedMessageId(lastUploadedId.get());
+                syncChanges += localChatrooms.size() + (lastUploadedId.get() > uploadCheckpoint ? 1 : 0);
+            }
+
+            /*
+             * The server tells us the format of the download, which we also use for the next upload.
+             */
+            SyncCodec downloadCodec = syncCodecs.forMediaType(response.getContentType());
+            if (response.getResponse().isValid()) {
+                Settings.saveSyncFormat(context, serverUri, downloadCodec.getMediaType());
+            }
 
             /*
              * Stream downloaded peer, chatroom and message information, and update the database.
              * The connection is closed in the finally block below.
              */
-            try (JsonReader rd = gson.newJsonReader(new InputStreamReader(new BufferedInputStream(response.getInputStream()), StringUtils.CHARSET))) {
-                // Parse data from server (messages and peers) and update database
-                rd.beginObject();
+            try (SyncPipeline pipeline = new SyncPipeline(chatDatabase);
+                 SyncDecoder decoder = downloadCodec.newDecoder(response.getInputStream())) {
 
                 /*
-                 * Download list of peers (some new, some updated).
+                 * Records are buffered and committed in batches, one transaction per batch,
+                 * rather than one transaction (and one fsync) per record.
                  */
-                String label = rd.nextName();
-                if (!RestMethod.PEERS.equals(label)) {
-                    throw new IllegalStateException("Expected 'peers', unexpected JSON label: " + label);
-                }
+                final int batchSize = Settings.getSyncBatchSize(context);
 
-                rd.beginArray();
-                while (rd.peek() != JsonToken.END_ARRAY) {
-                    Peer peer = gson.fromJson(rd, peerType);
+                /*
+                 * Download list of peers (some new, some updated).
+                 */
+                List<Peer> peers = new ArrayList<>(batchSize);
+                Peer peer;
+                while ((peer = decoder.readPeer()) != null) {
                     peer.id = 0;
                     Log.d(TAG, "Upserting peer: "+peer.name);
-                    chatDatabase.peerDao().upsert(peer);
+                    peers.add(peer);
+                    if (peers.size() >= batchSize) {
+                        upsertPeers(pipeline, peers);
+                        peers = new ArrayList<>(batchSize);
+                    }
                 }
-                rd.endArray();
+                upsertPeers(pipeline, peers);
 
                 /*
                  * Download list of chatrooms (some already in database).
                  */
-                label = rd.nextName();
-                if (!RestMethod.CHATROOMS.equals(label)) {
-                    throw new IllegalStateException("Expected 'chatrooms', unexpected JSON label: " + label);
-                }
-
-                rd.beginArray();
-                while (rd.peek() != JsonToken.END_ARRAY) {
-                    Chatroom chatroom = gson.fromJson(rd, chatroomType);
+                List<Chatroom> chatrooms = new ArrayList<>(batchSize);
+                Chatroom chatroom;
+                while ((chatroom = decoder.readChatroom()) != null) {
                     chatroom.id = 0;
                     Log.d(TAG, "Upserting chatroom: "+chatroom.name);
-                    chatDatabase.chatroomDao().insert(chatroom);
+                    chatrooms.add(chatroom);
+                    if (chatrooms.size() >= batchSize) {
+                        insertChatrooms(pipeline, chatrooms);
+                        chatrooms = new ArrayList<>(batchSize);
+                    }
                 }
-                rd.endArray();
+                insertChatrooms(pipeline, chatrooms);
 
                 /*
                  * Download new messages that have been uploaded to the server.
                  */
-                label = rd.nextName();
-                if (!RestMethod.MESSAGES.equals(label)) {
-                    throw new IllegalStateException("Expected 'messages', unexpected JSON label: " + label);
-                }
-
                 UUID appID = Settings.getAppId(context);
 
-                // TODO parse the list of messages and upsert them into the database.
-                rd.beginArray();
-                while (rd.peek() != JsonToken.END_ARRAY) {
-                    Message message = gson.fromJson(rd, messageType);
-                    chatDatabase.requestDao().upsert(appID, message);
+                /*
+                 * Each batch checkpoints the largest sequence number it commits, so if
+                 * the download fails partway we still commit the messages we have, and a retry
+                 * resumes after them (the server sends messages in sequence number order).
+                 */
+                List<Message> messages = new ArrayList<>(batchSize);
+                try {
+                    Message message;
+                    while ((message = decoder.readMessage()) != null) {
+                        syncChanges++;
+                        messages.add(message);
+                        if (messages.size() >= batchSize) {
+                            upsertMessages(pipeline, appID, messages);
+                            messages = new ArrayList<>(batchSize);
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Download interrupted, committing messages received so far.", e);
+                    try {
+                        upsertMessages(pipeline, appID, messages);
+                        pipeline.finish();
+                    } catch (IOException ignored) {
+                        // Report the original failure.
+                    }
+                    throw e;
                 }
-                rd.endArray();
+                upsertMessages(pipeline, appID, messages);
 
-                rd.endObject();
+                /*
+                 * Wait for the database writer to commit the last of the downloaded records.
+                 */
+                pipeline.finish();
 
             }
 
-            return response.getResponse();
+            /*
+             * Everything in this page has been committed, so advance the chatroom high-water mark and version.
+             */
+            ChatServiceResponse syncResponse = response.getResponse();
+            if (syncResponse instanceof SynchronizeResponse) {
+                SynchronizeResponse synchronizeResponse = (SynchronizeResponse) syncResponse;
+                chatDatabase.requestDao().saveChatroomSync(lastChatroomId, synchronizeResponse.chatroomVersion);
+                /*
+                 * The tag only stands for the server state once we have every page up to it.
+                 */
+                if (!synchronizeResponse.hasMore()) {
+                    chatDatabase.requestDao().saveSyncTag(synchronizeResponse.syncTag);
+                }
+            }
+
+            return syncResponse;
 
         } catch (IOException e) {
             Log.e(TAG, "Failure during synchronization!", e);
@@ -311,5 +661,25 @@ public class RequestProcessor {
         }
     }
 
+    /*
+     * Each batch of downloaded records is committed in a single transaction, on the sync writer thread.
+     */
+    private void upsertPeers(SyncPipeline pipeline, final List<Peer> peers) throws IOException {
+        if (!peers.isEmpty()) {
+            pipeline.submit(() -> chatDatabase.peerDao().upsert(peers));
+        }
+    }
+
+    private void insertChatrooms(SyncPipeline pipeline, final List<Chatroom> chatrooms) throws IOException {
+        if (!chatrooms.isEmpty()) {
+            pipeline.submit(() -> chatDatabase.chatroomDao().insert(chatrooms));
+        }
+    }
+
+    private void upsertMessages(SyncPipeline pipeline, final UUID appID, final List<Message> messages) throws IOException {
+        if (!messages.isEmpty()) {
+            pipeline.submit(() -> chatDatabase.requestDao().upsert(appID, messages));
+        }
+    }
 
 }
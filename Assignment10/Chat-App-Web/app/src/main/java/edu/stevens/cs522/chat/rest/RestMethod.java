@@ -6,7 +6,6 @@ import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkCapabilities;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Build;
 import android.util.Log;
@@ -18,38 +17,60 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
 import edu.stevens.cs522.chat.R;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.client.ChatroomTypeAdapter;
+import edu.stevens.cs522.chat.rest.client.CircuitBreaker;
+import edu.stevens.cs522.chat.rest.client.CircuitOpenException;
 import edu.stevens.cs522.chat.rest.client.ExcludeStrategy;
 import edu.stevens.cs522.chat.rest.client.HeaderInterceptor;
+import edu.stevens.cs522.chat.rest.client.MessageTypeAdapter;
+import edu.stevens.cs522.chat.rest.client.PeerTypeAdapter;
+import edu.stevens.cs522.chat.rest.client.RetryPolicy;
 import edu.stevens.cs522.chat.rest.client.ServerApi;
 import edu.stevens.cs522.chat.rest.client.StreamingOutput;
 import edu.stevens.cs522.chat.rest.client.StreamingResponse;
 import edu.stevens.cs522.chat.rest.client.TimestampSerializer;
 import edu.stevens.cs522.chat.rest.client.UUIDSerializer;
+import edu.stevens.cs522.chat.rest.codec.SyncCodec;
+import edu.stevens.cs522.chat.rest.codec.SyncCodecs;
 import edu.stevens.cs522.chat.rest.request.ErrorResponse;
 import edu.stevens.cs522.chat.rest.request.PostMessageRequest;
+import edu.stevens.cs522.chat.rest.request.PostMessagesRequest;
 import edu.stevens.cs522.chat.rest.request.RegisterRequest;
 import edu.stevens.cs522.chat.rest.request.ChatServiceRequest;
 import edu.stevens.cs522.chat.rest.request.ChatServiceResponse;
 import edu.stevens.cs522.chat.rest.request.SynchronizeRequest;
 import edu.stevens.cs522.chat.settings.Settings;
 import edu.stevens.cs522.base.StringUtils;
-import okhttp3.Interceptor;
+import okhttp3.ConnectionPool;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
 import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.Retrofit;
@@ -80,11 +101,18 @@ public class RestMethod {
 
     public final static String CONNECTION = "CONNECTION";
 
+    /*
+     * Content encodings
+     */
+    public final static String GZIP_ENCODING = "gzip";
+
     /*
      * MIME types
      */
     public final static String JSON_TYPE = "application/json";
 
+    public final static String EVENT_STREAM_TYPE = "text/event-stream";
+
     /*
      * Timeouts
      */
@@ -102,6 +130,10 @@ public class RestMethod {
 
     public static final int HTTP_RESPONSE_STRING_UNAVAILABLE = R.string.http_response_unavailable;
 
+    public static final int HTTP_RESPONSE_CODE_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    public static final int HTTP_RESPONSE_CODE_INTERNAL_ERROR = 500;
+
     /*
      * JSON labels
      */
@@ -115,55 +147,227 @@ public class RestMethod {
 
     private final Gson gson;
 
+    private final SyncCodecs syncCodecs;
+
 
     public RestMethod(Context context) {
         this.context = context;
         /*
-         * Create the GSON parser/unparser.
+         * Create the GSON parser/unparser.  The entities exchanged with the server use
+         * hand-written streaming adapters, rather than reflection.
          */
+        ExcludeStrategy excludeStrategy = new ExcludeStrategy();
         GsonBuilder gsonBuilder = new GsonBuilder();
         gsonBuilder.registerTypeAdapter(Date.class, new TimestampSerializer())
                    .registerTypeAdapter(UUID.class, new UUIDSerializer())
-                   .setExclusionStrategies(new ExcludeStrategy());
+                   .registerTypeAdapter(Peer.class, new PeerTypeAdapter(excludeStrategy))
+                   .registerTypeAdapter(Chatroom.class, new ChatroomTypeAdapter(excludeStrategy))
+                   .registerTypeAdapter(Message.class, new MessageTypeAdapter(excludeStrategy))
+                   .setExclusionStrategies(excludeStrategy);
         this.gson = gsonBuilder.create();
+
+        this.syncCodecs = new SyncCodecs(gson);
     }
 
     public Gson getGson() {
         return gson;
     }
 
+    public SyncCodecs getSyncCodecs() {
+        return syncCodecs;
+    }
+
     /*
-     * Create a retrofit client stub around an OkHttp client.
+     * One HTTP client (with its connection pool and dispatcher) is shared by all requests, and
+     * one retrofit client stub is created per chat server.  The app-specific headers for each
+     * request are added by the interceptor, from the request that is attached to the call as a tag.
      */
-    protected ServerApi createClient(Uri serverUri, ChatServiceRequest request) {
-        /*
-         * Create the HTTP client stub.
-         */
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        Map<String,String> headers = request.getRequestHeaders();
-        headers.put(USER_AGENT, buildUserAgent(context));
-        Interceptor interceptor = new HeaderInterceptor(headers);
-        builder.interceptors().add(interceptor);
-        OkHttpClient client = builder.build();
+    private static final long KEEP_ALIVE_DURATION = 5;
 
-        /*
-         * TODO Wrap the okhttp client with a retrofit stub factory.
-         */
-        Retrofit retrofit = new Retrofit.Builder().baseUrl(serverUri.toString()).addConverterFactory(GsonConverterFactory.create(this.gson)).client(client).build();
-        return retrofit.create(ServerApi.class);
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    private static OkHttpClient httpClient;
+
+    private static final Map<String,ServerApi> servers = new ConcurrentHashMap<>();
+
+    /*
+     * The push channel shares the connection pool, but allows a longer wait between events.
+     * The server is expected to send a keep-alive comment more often than this.
+     */
+    private static final long EVENT_STREAM_TIMEOUT = 60;
+
+    private static final Map<String,ServerApi> eventServers = new ConcurrentHashMap<>();
+
+    /*
+     * The chat socket is pinged to detect a dead connection, rather than timing out reads.
+     */
+    private static final long SOCKET_PING_INTERVAL = 30;
+
+    private static final String SOCKET_PATH = "chat/%s/socket";
+
+    private static synchronized OkHttpClient getHttpClient(Context context) {
+        if (httpClient == null) {
+            Map<String,String> headers = new HashMap<>();
+            headers.put(USER_AGENT, buildUserAgent(context));
+            httpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION, TimeUnit.MINUTES))
+                    .addInterceptor(new HeaderInterceptor(headers))
+                    .build();
+        }
+        return httpClient;
+    }
+
+    /*
+     * Close idle connections and release the client stubs (they are recreated on demand).
+     */
+    public static synchronized void shutdown() {
+        servers.clear();
+        eventServers.clear();
+        if (httpClient != null) {
+            httpClient.connectionPool().evictAll();
+            httpClient = null;
+        }
+    }
+
+    /*
+     * Get the retrofit client stub for a server, creating it on first use.
+     */
+    protected ServerApi createClient(Uri serverUri) {
+        String baseUrl = serverUri.toString();
+        ServerApi server = servers.get(baseUrl);
+        if (server == null) {
+            // TODO Wrap the okhttp client with a retrofit stub factory.
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl(baseUrl)
+                    .addConverterFactory(GsonConverterFactory.create(this.gson))
+                    .client(getHttpClient(context))
+                    .build();
+            ServerApi created = retrofit.create(ServerApi.class);
+            server = servers.putIfAbsent(baseUrl, created);
+            if (server == null) {
+                server = created;
+            }
+        }
+        return server;
+    }
+
+
+    /*
+     * Get the retrofit client stub for the push channel from a server, creating it on first use.
+     */
+    protected ServerApi createEventClient(Uri serverUri) {
+        String baseUrl = serverUri.toString();
+        ServerApi server = eventServers.get(baseUrl);
+        if (server == null) {
+            OkHttpClient eventClient = getHttpClient(context).newBuilder()
+                    .readTimeout(EVENT_STREAM_TIMEOUT, TimeUnit.SECONDS)
+                    .build();
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl(baseUrl)
+                    .addConverterFactory(GsonConverterFactory.create(this.gson))
+                    .client(eventClient)
+                    .build();
+            ServerApi created = retrofit.create(ServerApi.class);
+            server = eventServers.putIfAbsent(baseUrl, created);
+            if (server == null) {
+                server = created;
+            }
+        }
+        return server;
+    }
+
+    /**
+     * For SYNC: open the push channel from the server (the caller executes, and may cancel, the call).
+     */
+    public Call<ResponseBody> openEventStream(long lastSequenceNumber) {
+        Uri serverUri = Objects.requireNonNull(Settings.getServerUri(context));
+        ServerApi server = createEventClient(serverUri);
+        return server.events(Settings.getChatName(context), lastSequenceNumber, EVENT_STREAM_TYPE);
+    }
+
+    /**
+     * Open the chat socket to the server (OkHttp accepts the http(s) URL and upgrades it).
+     */
+    public WebSocket openWebSocket(WebSocketListener listener) {
+        Uri serverUri = Objects.requireNonNull(Settings.getServerUri(context));
+        String url = serverUri.buildUpon()
+                .appendEncodedPath(String.format(SOCKET_PATH, Uri.encode(Settings.getChatName(context))))
+                .build().toString();
+        OkHttpClient socketClient = getHttpClient(context).newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .pingInterval(SOCKET_PING_INTERVAL, TimeUnit.SECONDS)
+                .build();
+        Request request = new Request.Builder().url(url).build();
+        return socketClient.newWebSocket(request, listener);
     }
 
+    /*
+     * Execute a call to a server, retrying (with a clone of the call) according to the policy for
+     * the type of request, unless the circuit for the server is open.  The last response (or
+     * exception) is returned to the caller if we run out of attempts.
+     */
+    private <T> Response<T> execute(Call<T> call, ChatServiceRequest.RequestType requestType, Uri serverUri) throws IOException {
+        RetryPolicy policy = RetryPolicy.forRequestType(requestType);
+        CircuitBreaker breaker = CircuitBreaker.getInstance(serverUri.toString());
+        long delay = 0;
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.allowRequest()) {
+                throw new CircuitOpenException("Circuit open: " + breaker);
+            }
+            Call<T> attemptCall = attempt == 1 ? call : call.clone();
+            long retryAfter = -1;
+            try {
+                Response<T> response = attemptCall.execute();
+                if (RetryPolicy.isServerFailure(response.code())) {
+                    breaker.recordFailure();
+                } else {
+                    breaker.recordSuccess();
+                }
+                if (!policy.isRetryable(response.code())) {
+                    return response;
+                }
+                retryAfter = RetryPolicy.getRetryAfter(response.headers());
+                if (attempt >= policy.getMaxAttempts() || retryAfter > policy.getMaxDelay()) {
+                    return response;
+                }
+                if (response.errorBody() != null) {
+                    response.errorBody().close();
+                }
+                Log.d(TAG, String.format("%s: server returned %d, retrying.", requestType.getValue(), response.code()));
+            } catch (IOException e) {
+                breaker.recordFailure();
+                if (attempt >= policy.getMaxAttempts() || attemptCall.isCanceled() || !policy.isRetryable(e)) {
+                    throw e;
+                }
+                Log.d(TAG, String.format("%s: %s, retrying.", requestType.getValue(), e.getMessage()));
+            } catch (RuntimeException e) {
+                // Otherwise a half-open circuit would wait for the end of this trial call forever.
+                breaker.recordFailure();
+                throw e;
+            }
+            delay = retryAfter >= 0 ? retryAfter : policy.nextDelay(delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry.");
+            }
+        }
+    }
 
     public ChatServiceResponse perform(RegisterRequest request) {
         try {
             Log.d(TAG, "Performing REST method for registration....");
-            ServerApi server = createClient(request.chatServer, request);
+            ServerApi server = createClient(request.chatServer);
             Response<Void> response = null;
             // TODO execute the Web service call
-            Call<Void> call = server.register(request.chatname);
-            response = call.execute();
+            Call<Void> call = server.register(request.chatname, request);
+            response = execute(call, ChatServiceRequest.RequestType.REGISTER, request.chatServer);
             return request.getResponse(response);
 
+        } catch (CircuitOpenException e) {
+            Log.w(TAG, e.getMessage());
+            return isUnavailable(request);
         } catch (SocketTimeoutException e) {
             Log.e(TAG, "Socket timeout.", e);
             return isUnavailable(request);
@@ -175,16 +379,20 @@ public class RestMethod {
 
     public ChatServiceResponse perform(PostMessageRequest request) {
         try {
-            ServerApi server = createClient(Objects.requireNonNull(Settings.getServerUri(context)), request);
+            Uri serverUri = Objects.requireNonNull(Settings.getServerUri(context));
+            ServerApi server = createClient(serverUri);
             Log.d(TAG, String.format("Sending \"%s\" to %s", request.message.messageText, request.message.chatroom));
 
             Response<Void> response = null;
             // TODO execute the Web service call
-            Call<Void> call = server.postMessage(request.message.sender, request.message);
-            response = call.execute();
+            Call<Void> call = server.postMessage(request.message.sender, request.message, request);
+            response = execute(call, ChatServiceRequest.RequestType.POST_MESSAGE, serverUri);
 
 
             return request.getResponse(response);
+        } catch (CircuitOpenException e) {
+            Log.w(TAG, e.getMessage());
+            return isUnavailable(request);
         } catch (SocketTimeoutException e) {
             return isUnavailable(request);
         } catch (IOException e) {
@@ -193,41 +401,69 @@ public class RestMethod {
         }
     }
 
-    protected MediaType jsonType = MediaType.get("application/json");
+    public ChatServiceResponse perform(PostMessagesRequest request) {
+        try {
+            Uri serverUri = Objects.requireNonNull(Settings.getServerUri(context));
+            ServerApi server = createClient(serverUri);
+            Log.d(TAG, String.format("Sending %d messages", request.messages.size()));
+
+            Response<?> response;
+            if (request.messages.size() == 1) {
+                Message message = request.messages.get(0);
+                Call<Void> call = server.postMessage(message.sender, message, request);
+                response = execute(call, ChatServiceRequest.RequestType.POST_MESSAGES, serverUri);
+            } else {
+                Call<List<Long>> call = server.postMessages(Settings.getChatName(context), request.messages, request);
+                response = execute(call, ChatServiceRequest.RequestType.POST_MESSAGES, serverUri);
+            }
+
+            return request.getResponse(response);
+        } catch (CircuitOpenException e) {
+            Log.w(TAG, e.getMessage());
+            return isUnavailable(request);
+        } catch (SocketTimeoutException e) {
+            return isUnavailable(request);
+        } catch (IOException e) {
+            Log.e(TAG, "Post messages: Web service error.", e);
+            return new ErrorResponse(0, ErrorResponse.Status.SYSTEM_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * The upload is streamed in the given wire format, and the server is asked to respond in
+     * the binary format if it supports it (the response says which format it used).
+     */
+    public StreamingResponse perform(SynchronizeRequest request, SyncCodec uploadCodec, final StreamingOutput out) throws IOException {
 
-    public StreamingResponse perform(SynchronizeRequest request, final StreamingOutput out) throws IOException {
+        Uri serverUri = Objects.requireNonNull(Settings.getServerUri(context));
 
-        ServerApi server = createClient(Objects.requireNonNull(Settings.getServerUri(context)), request);
+        ServerApi server = createClient(serverUri);
 
         String chatName = Settings.getChatName(context);
 
-        /*
-         * We will stream the output JSON data in this request body.
-         */
-        RequestBody requestBody = new RequestBody() {
-            @Nullable
-            @Override
-            public MediaType contentType() {
-                return jsonType;
-            }
+        final boolean gzip = Settings.isGzipUpload(context, serverUri);
 
-            @Override
-            public void writeTo(BufferedSink sink) throws IOException {
-                try (OutputStream os = sink.outputStream()) {
-                    out.write(os);
-                }
-            }
-        };
+        RequestBody requestBody = newStreamingBody(MediaType.get(uploadCodec.getMediaType()), gzip, out);
 
         Response<ResponseBody> callResponse = null;
 
         ChatServiceResponse response = null;
 
         // TODO execute the Web service call
-        Call<ResponseBody> call = server.syncMessages(chatName, request.lastSequenceNumber, requestBody);
-        callResponse = call.execute();
+        Call<ResponseBody> call = server.syncMessages(chatName, request.lastSequenceNumber, request.chatroomVersion, request.pageSize,
+                gzip ? GZIP_ENCODING : null, syncCodecs.getAccept(), request.syncTag, requestBody, request);
+        callResponse = execute(call, ChatServiceRequest.RequestType.SYNCHRONIZE, serverUri);
         response = request.getResponse(callResponse);
 
+        /*
+         * The server may not accept compressed uploads, so the next sync uploads without compression.
+         */
+        if (gzip && isRejectedUpload(callResponse.code())) {
+            Log.w(TAG, String.format("Chat server returned %d for a compressed upload, disabling compression for %s",
+                    callResponse.code(), serverUri));
+            Settings.saveGzipUpload(context, serverUri, false);
+        }
+
         // end TODO
 
         /*
@@ -239,6 +475,41 @@ public class RestMethod {
     }
 
 
+    /*
+     * Could this response mean that the server did not understand a compressed upload?  Only a
+     * server that supports it answers 415 Unsupported Media Type; many others ignore the
+     * Content-Encoding header and fail to parse the body, with a client error (other than one
+     * asking us to retry later) or an internal error.
+     */
+    static boolean isRejectedUpload(int code) {
+        if (code == HTTP_RESPONSE_CODE_INTERNAL_ERROR) {
+            return true;
+        }
+        return code >= 400 && code < 500 && code != 408 && code != 429;
+    }
+
+    /*
+     * We will stream the upload in this request body, compressed if the server accepts gzip
+     * (the caller sets the Content-Encoding header).
+     */
+    static RequestBody newStreamingBody(final MediaType uploadType, final boolean gzip, final StreamingOutput out) {
+        return new RequestBody() {
+            @Nullable
+            @Override
+            public MediaType contentType() {
+                return uploadType;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                BufferedSink body = gzip ? Okio.buffer(new GzipSink(sink)) : sink;
+                try (OutputStream os = body.outputStream()) {
+                    out.write(os);
+                }
+            }
+        };
+    }
+
     /**
      * Build and return a user-agent string that can identify this application to remote servers. Contains the package
      * name and version code.
@@ -257,6 +528,22 @@ public class RestMethod {
         return context.getPackageName() + "/" + versionName + " (" + versionCode + ") (gzip)";
     }
 
+    /**
+     * The type of the default network (used to adapt how often we sync).
+     */
+    public static SyncScheduler.NetworkType getNetworkType(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        Network network = connectivityManager.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null ? connectivityManager.getNetworkCapabilities(network) : null;
+        if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+            return SyncScheduler.NetworkType.NONE;
+        }
+        if (capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) {
+            return SyncScheduler.NetworkType.UNMETERED;
+        }
+        return SyncScheduler.NetworkType.METERED;
+    }
+
     private ErrorResponse isUnavailable(ChatServiceRequest request) {
         return new ErrorResponse(
                 HTTP_RESPONSE_CODE_UNAVAILABLE,
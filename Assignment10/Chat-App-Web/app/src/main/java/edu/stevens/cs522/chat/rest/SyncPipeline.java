@@ -0,0 +1,134 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import edu.stevens.cs522.chat.databases.ChatDatabase;
+
+/**
+ * For SYNC: decouples parsing of the download stream from writes to the database.
+ *
+ * The thread performing the sync parses records from the server and submits batches of
+ * database updates to a bounded queue, which are drained by a single writer thread that
+ * commits each batch in its own transaction.  If the queue is full, the parser blocks
+ * (and stops reading from the network) until the writer catches up.  If a write fails,
+ * the next submission by the parser throws an exception, which aborts the download.
+ */
+public class SyncPipeline implements Closeable {
+
+    private static final String TAG = SyncPipeline.class.getCanonicalName();
+
+    /*
+     * Maximum number of batches waiting to be written.
+     */
+    private static final int QUEUE_CAPACITY = 4;
+
+    /*
+     * How often a blocked parser checks for a failure in the writer.
+     */
+    private static final long POLL_INTERVAL = 100;
+
+    /*
+     * Marks the end of the batches from the parser.
+     */
+    private static final Runnable END = () -> { };
+
+    private final ChatDatabase chatDatabase;
+
+    private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final Thread writer;
+
+    private volatile RuntimeException failure;
+
+    private volatile boolean aborted;
+
+    public SyncPipeline(ChatDatabase chatDatabase) {
+        this.chatDatabase = chatDatabase;
+        this.writer = new Thread(this::drain, "sync-writer");
+        this.writer.start();
+    }
+
+    /*
+     * Run on the writer thread.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                Runnable batch = queue.take();
+                if (batch == END || aborted) {
+                    return;
+                }
+                chatDatabase.runInTransaction(batch);
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Sync writer interrupted.");
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Sync writer failed to update the database.", e);
+            failure = e;
+            queue.clear();
+            // The peer cache may hold peers written in the transaction that was rolled back.
+            chatDatabase.peerDao().invalidateCache();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Database update failed during synchronization.", failure);
+        }
+    }
+
+    /**
+     * Queue a batch of updates to be committed in a single transaction, blocking if the writer
+     * has fallen behind.
+     */
+    public void submit(Runnable batch) throws IOException {
+        checkFailure();
+        try {
+            while (!queue.offer(batch, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for sync writer.");
+        }
+    }
+
+    /**
+     * Wait for all batches to be committed, and report any failure.
+     */
+    public void finish() throws IOException {
+        submit(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for sync writer.");
+        }
+        checkFailure();
+    }
+
+    /**
+     * Discard any batches not yet written (if finish() was not called) and stop the writer.
+     */
+    @Override
+    public void close() {
+        if (writer.isAlive()) {
+            aborted = true;
+            queue.clear();
+            queue.offer(END);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.Date;
+
+import edu.stevens.cs522.base.DateUtils;
+import edu.stevens.cs522.base.work.PeriodicWorkRequest;
+import edu.stevens.cs522.base.work.WorkManager;
+import edu.stevens.cs522.chat.rest.work.SynchronizeWorker;
+
+/**
+ * For SYNC: schedules periodic synchronization, adapting the interval to chat activity and
+ * to the network.
+ *
+ * The interval drops to the minimum after a message is sent or received, and doubles (up to
+ * the maximum) after each sync that finds nothing to upload or download.  On a metered network
+ * the interval is twice as long (but no longer than the maximum), and with no network it is the maximum (when the
+ * network comes back, we sync straight away).  Each change of interval is logged and published
+ * as a Decision, so it can be observed in the field.
+ *
+ * The periodic work runs at the shortest interval for the network, and is only replaced when
+ * the network changes.  A run skips the sync until the interval for chat activity has passed
+ * since the last sync, so a sync that completes never replaces the work that is running it.
+ * Callbacks that arrive after stop() are ignored.
+ */
+public class SyncScheduler {
+
+    private static final String TAG = SyncScheduler.class.getCanonicalName();
+
+    /*
+     * Sync intervals, in minutes (the unit of PeriodicWorkRequest).
+     */
+    public static final int MIN_INTERVAL = 1;
+
+    public static final int MAX_INTERVAL = 30;
+
+    private static final int METERED_FACTOR = 2;
+
+    public enum NetworkType {
+        NONE,
+        METERED,
+        UNMETERED
+    }
+
+    /**
+     * A decision by the scheduler: the new interval, and why.
+     */
+    public static class Decision {
+
+        public final int interval;
+
+        public final NetworkType networkType;
+
+        public final String reason;
+
+        public final Date timestamp;
+
+        public Decision(int interval, NetworkType networkType, String reason) {
+            this.interval = interval;
+            this.networkType = networkType;
+            this.reason = reason;
+            this.timestamp = DateUtils.now();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d min (%s): %s", interval, networkType, reason);
+        }
+    }
+
+    private static SyncScheduler instance;
+
+    private final Context context;
+
+    private final WorkManager workManager;
+
+    private final ConnectivityManager connectivityManager;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final MutableLiveData<Decision> decisions = new MutableLiveData<>();
+
+    private boolean started;
+
+    private PeriodicWorkRequest syncRequest;
+
+    // The interval based on chat activity (before adjusting for the network)
+    private int activityInterval = MIN_INTERVAL;
+
+    // The interval last decided on (0 before the first decision)
+    private int interval;
+
+    // Runs of the periodic work since the last sync that completed
+    private int runsSinceSync;
+
+    private NetworkType networkType = NetworkType.UNMETERED;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(@NonNull Network network) {
+            handler.post(() -> onNetworkChanged());
+        }
+
+        @Override
+        public void onLost(@NonNull Network network) {
+            handler.post(() -> onNetworkChanged());
+        }
+    };
+
+    private SyncScheduler(Context context) {
+        this.context = context;
+        this.workManager = WorkManager.getInstance(context);
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    public static synchronized SyncScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * The decisions made by the scheduler, for diagnostics.
+     */
+    public LiveData<Decision> getDecisions() {
+        return decisions;
+    }
+
+    public synchronized boolean isStarted() {
+        return started;
+    }
+
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            networkType = RestMethod.getNetworkType(context);
+            activityInterval = MIN_INTERVAL;
+            interval = 0;
+            runsSinceSync = 0;
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+            decide("started");
+            schedule();
+        }
+    }
+
+    public synchronized void stop() {
+        if (started) {
+            started = false;
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+            final PeriodicWorkRequest current = syncRequest;
+            syncRequest = null;
+            if (current != null) {
+                handler.post(() -> workManager.cancelPeriodicUniqueWork(current));
+            }
+        }
+    }
+
+    /**
+     * A message was sent or received.
+     */
+    public synchronized void onActivity(String reason) {
+        if (started && activityInterval != MIN_INTERVAL) {
+            activityInterval = MIN_INTERVAL;
+            decide(reason);
+        }
+    }
+
+    /**
+     * A sync completed, which did (or did not) upload or download anything.  This is called
+     * from the sync itself, so it only changes the interval, not the periodic work.
+     */
+    public synchronized void onSyncCompleted(boolean changes) {
+        if (!started) {
+            return;
+        }
+        runsSinceSync = 0;
+        if (changes) {
+            onActivity("sync exchanged data");
+        } else if (activityInterval < MAX_INTERVAL) {
+            activityInterval = Math.min(2 * activityInterval, MAX_INTERVAL);
+            decide("sync found nothing new");
+        }
+    }
+
+    /**
+     * The periodic work is running: should it sync now, or skip this run, because the interval
+     * has not yet passed since the last sync (or we have been stopped)?
+     */
+    public synchronized boolean onPeriodicSync() {
+        if (!started || syncRequest == null) {
+            return false;
+        }
+        runsSinceSync++;
+        if (runsSinceSync * syncRequest.getInterval() < getInterval()) {
+            Log.d(TAG, "Skipping periodic sync, interval " + getInterval() + " min.");
+            return false;
+        }
+        return true;
+    }
+
+    private void onNetworkChanged() {
+        onNetworkChanged(RestMethod.getNetworkType(context));
+    }
+
+    synchronized void onNetworkChanged(NetworkType type) {
+        if (!started) {
+            return;
+        }
+        NetworkType previous = networkType;
+        networkType = type;
+        if (networkType != previous) {
+            if (previous == NetworkType.NONE) {
+                activityInterval = MIN_INTERVAL;
+                SyncTrigger.getInstance(context).requestSync("network available");
+            }
+            decide("network now " + networkType);
+            schedule();
+        }
+    }
+
+    synchronized int getInterval() {
+        switch (networkType) {
+            case NONE:
+                return MAX_INTERVAL;
+            case METERED:
+                return Math.min(METERED_FACTOR * activityInterval, MAX_INTERVAL);
+            default:
+                return activityInterval;
+        }
+    }
+
+    /*
+     * The interval of the periodic work: the shortest interval on the current network.
+     */
+    private int getPeriod() {
+        switch (networkType) {
+            case NONE:
+                return MAX_INTERVAL;
+            case METERED:
+                return METERED_FACTOR * MIN_INTERVAL;
+            default:
+                return MIN_INTERVAL;
+        }
+    }
+
+    synchronized PeriodicWorkRequest getSyncRequest() {
+        return syncRequest;
+    }
+
+    /*
+     * Log and publish the interval if it has changed.
+     */
+    private void decide(String reason) {
+        int next = getInterval();
+        if (next == interval) {
+            return;
+        }
+        interval = next;
+        Decision decision = new Decision(interval, networkType, reason);
+        Log.i(TAG, "Sync interval " + decision);
+        decisions.postValue(decision);
+    }
+
+    /*
+     * Replace the periodic work if its interval has changed (on the main thread, in order).
+     * Only called on start() and when the network changes, never from a sync.
+     */
+    private void schedule() {
+        final int period = getPeriod();
+        if (syncRequest != null && syncRequest.getInterval() == period) {
+            return;
+        }
+        final PeriodicWorkRequest previous = syncRequest;
+        syncRequest = new PeriodicWorkRequest(SynchronizeWorker.class, null, period);
+        final PeriodicWorkRequest next = syncRequest;
+        handler.post(() -> {
+            if (previous != null) {
+                workManager.cancelPeriodicUniqueWork(previous);
+            }
+            workManager.enqueuePeriodicUniqueWork(next);
+        });
+    }
+
+}
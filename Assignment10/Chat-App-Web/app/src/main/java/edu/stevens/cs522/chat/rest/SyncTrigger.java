@@ -0,0 +1,99 @@
+package edu.stevens.cs522.chat.rest;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import edu.stevens.cs522.chat.rest.request.SynchronizeRequest;
+import edu.stevens.cs522.chat.settings.Settings;
+
+/**
+ * For SYNC: on-demand synchronization, which any part of the app may request (e.g. after
+ * posting a message, or on a push notification), in addition to periodic sync.
+ *
+ * Requests within a short window of the first are collapsed into a single sync.  A request
+ * that arrives while a sync is running schedules exactly one more sync after it (however many
+ * requests arrive), since the running sync may have started too early to include the change.
+ */
+public class SyncTrigger {
+
+    private static final String TAG = SyncTrigger.class.getCanonicalName();
+
+    /*
+     * How long (ms) to wait for further requests before syncing.
+     */
+    private static final long DEBOUNCE_WINDOW = 500;
+
+    private static SyncTrigger instance;
+
+    private final Context context;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    // A sync is waiting for the end of the debounce window
+    private boolean scheduled;
+
+    // A sync is in progress
+    private boolean running;
+
+    // Another sync was requested while one was in progress
+    private boolean followUp;
+
+    private SyncTrigger(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized SyncTrigger getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncTrigger(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Request a sync soon (no-op if Settings.SYNC == false).
+     */
+    public synchronized void requestSync(String reason) {
+        if (!Settings.SYNC) {
+            return;
+        }
+        if (running) {
+            Log.d(TAG, "Sync in progress, will sync again afterwards: " + reason);
+            followUp = true;
+        } else if (!scheduled) {
+            Log.d(TAG, "Scheduling sync: " + reason);
+            schedule();
+        } else {
+            Log.d(TAG, "Sync already scheduled: " + reason);
+        }
+    }
+
+    private void schedule() {
+        scheduled = true;
+        executor.schedule(this::run, DEBOUNCE_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        synchronized (this) {
+            scheduled = false;
+            running = true;
+        }
+        try {
+            RequestProcessor.getInstance(context).process(new SynchronizeRequest());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "On-demand sync failed.", e);
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (followUp) {
+                    followUp = false;
+                    schedule();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import edu.stevens.cs522.chat.entities.Chatroom;
+
+public class ChatroomTypeAdapter extends EntityTypeAdapter<Chatroom> {
+
+    private static final String ID = "id";
+    private static final String NAME = "name";
+
+    public ChatroomTypeAdapter(ExclusionStrategy strategy) {
+        super(Chatroom.class, strategy);
+    }
+
+    @Override
+    protected Chatroom newInstance() {
+        return new Chatroom();
+    }
+
+    @Override
+    protected boolean readField(JsonReader in, String name, Chatroom chatroom) throws IOException {
+        switch (name) {
+            case ID:
+                chatroom.id = readLong(in);
+                return true;
+            case NAME:
+                chatroom.name = readString(in);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, Chatroom chatroom) throws IOException {
+        write(out, ID, chatroom.id);
+        write(out, NAME, chatroom.name);
+    }
+}
@@ -0,0 +1,153 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A circuit breaker for calls to a chat server, shared by all requests to that server.
+ *
+ * After a run of consecutive failures the circuit opens, and calls fail immediately (without
+ * touching the network) until the open period expires.  The circuit is then half-open: a single
+ * trial call is let through, which closes the circuit if it succeeds, or reopens it (for twice
+ * as long) if it fails.  A Retry-After from the server only delays the retry of that call
+ * (see RetryPolicy), it does not open the circuit by itself.
+ */
+public class CircuitBreaker {
+
+    private static final String TAG = CircuitBreaker.class.getCanonicalName();
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /*
+     * Consecutive failures that open the circuit.
+     */
+    private static final int FAILURE_THRESHOLD = 5;
+
+    /*
+     * How long the circuit stays open (ms), doubling each time a trial call fails.
+     */
+    private static final long MIN_OPEN_DURATION = 30 * 1000;
+
+    private static final long MAX_OPEN_DURATION = 10 * 60 * 1000;
+
+    private static final Map<String,CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final String server;
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    private long openDuration = MIN_OPEN_DURATION;
+
+    private long openUntil;
+
+    private boolean trialInProgress;
+
+    private CircuitBreaker(String server) {
+        this.server = server;
+    }
+
+    public static CircuitBreaker getInstance(String server) {
+        CircuitBreaker breaker = breakers.get(server);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(server);
+            breaker = breakers.putIfAbsent(server, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * For diagnostics: the state of the circuit for every server we have called (logged by
+     * the workers when a background request fails).
+     */
+    public static Map<String,State> getStates() {
+        Map<String,State> states = new HashMap<>();
+        for (Map.Entry<String,CircuitBreaker> entry : breakers.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().getState());
+        }
+        return states;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            state = State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Time (ms) until the circuit half-opens, 0 if it is not open.
+     */
+    public synchronized long getRemainingOpenTime() {
+        return getState() == State.OPEN ? openUntil - System.currentTimeMillis() : 0;
+    }
+
+    /**
+     * May a call be made now?  In the half-open state, only one trial call at a time.
+     */
+    public synchronized boolean allowRequest() {
+        switch (getState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialInProgress) {
+                    return false;
+                }
+                trialInProgress = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            Log.i(TAG, "Closing circuit for " + server);
+        }
+        state = State.CLOSED;
+        failures = 0;
+        openDuration = MIN_OPEN_DURATION;
+        trialInProgress = false;
+    }
+
+    /**
+     * Record a failed call (an I/O error, a server error, or an unexpected exception).
+     */
+    public synchronized void recordFailure() {
+        failures++;
+        if (getState() == State.HALF_OPEN) {
+            trialInProgress = false;
+            openDuration = Math.min(2 * openDuration, MAX_OPEN_DURATION);
+            open();
+        } else if (state == State.CLOSED && failures >= FAILURE_THRESHOLD) {
+            open();
+        }
+    }
+
+    private void open() {
+        Log.w(TAG, String.format("Opening circuit for %s for %d ms after %d failures.", server, openDuration, failures));
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openDuration;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %s (%d consecutive failures)", server, getState(), failures);
+    }
+
+}
@@ -0,0 +1,14 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import java.io.IOException;
+
+/**
+ * A call was not made because the circuit for the chat server is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,144 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Base class for hand-written streaming adapters for the entities exchanged with the server.
+ * Subclasses read and write fields directly on the JSON stream, rather than by reflection.
+ *
+ * Fields skipped by the exclusion strategy (i.e. annotated with @Exclude) are determined once,
+ * when the adapter is created, and are neither written nor read.
+ */
+public abstract class EntityTypeAdapter<T> extends TypeAdapter<T> {
+
+    protected static final TimestampSerializer TIMESTAMP_ADAPTER = new TimestampSerializer();
+
+    protected static final UUIDSerializer UUID_ADAPTER = new UUIDSerializer();
+
+    private final Set<String> excluded = new HashSet<>();
+
+    protected EntityTypeAdapter(Class<T> clazz, ExclusionStrategy strategy) {
+        for (Field field : clazz.getDeclaredFields()) {
+            if (strategy.shouldSkipField(new FieldAttributes(field))) {
+                excluded.add(field.getName());
+            }
+        }
+    }
+
+    protected boolean isIncluded(String name) {
+        return !excluded.contains(name);
+    }
+
+    /*
+     * Writing fields (null values are dropped by the writer, unless it serializes nulls).
+     */
+    protected void write(JsonWriter out, String name, long value) throws IOException {
+        if (isIncluded(name)) {
+            out.name(name).value(value);
+        }
+    }
+
+    protected void write(JsonWriter out, String name, String value) throws IOException {
+        if (isIncluded(name)) {
+            out.name(name).value(value);
+        }
+    }
+
+    protected void write(JsonWriter out, String name, Double value) throws IOException {
+        if (isIncluded(name)) {
+            out.name(name).value(value);
+        }
+    }
+
+    protected void write(JsonWriter out, String name, Date value) throws IOException {
+        if (isIncluded(name)) {
+            out.name(name);
+            TIMESTAMP_ADAPTER.write(out, value);
+        }
+    }
+
+    protected void write(JsonWriter out, String name, UUID value) throws IOException {
+        if (isIncluded(name)) {
+            out.name(name);
+            UUID_ADAPTER.write(out, value);
+        }
+    }
+
+    /*
+     * Reading nullable fields.
+     */
+    protected static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    protected static Double readDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextDouble();
+    }
+
+    protected static long readLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextLong();
+    }
+
+    @Override
+    public final T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        T entity = newInstance();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (!isIncluded(name) || !readField(in, name, entity)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return entity;
+    }
+
+    @Override
+    public final void write(JsonWriter out, T entity) throws IOException {
+        if (entity == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeFields(out, entity);
+        out.endObject();
+    }
+
+    protected abstract T newInstance();
+
+    /**
+     * Read the value of the named field into the entity, returning false if the field is unknown.
+     */
+    protected abstract boolean readField(JsonReader in, String name, T entity) throws IOException;
+
+    protected abstract void writeFields(JsonWriter out, T entity) throws IOException;
+
+}
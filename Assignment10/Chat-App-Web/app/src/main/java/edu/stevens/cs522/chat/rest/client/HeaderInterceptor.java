@@ -10,9 +10,12 @@ import okhttp3.Response;
 
 /*
  * This interceptor adds app-specific headers to every message sent to HTTP server.
+ * The same interceptor is shared by all requests: the headers for a particular request
+ * (app ID, timestamp, location) are taken from the request attached to the call as a tag.
  */
 public class HeaderInterceptor implements Interceptor {
 
+    // Headers added to every request (e.g. user agent)
     protected Map<String,String> headers;
 
     public HeaderInterceptor(Map<String,String> headers) {
@@ -21,10 +24,17 @@ public class HeaderInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Request.Builder httpRequestBuilder = chain.request().newBuilder();
+        Request request = chain.request();
+        Request.Builder httpRequestBuilder = request.newBuilder();
         for (Map.Entry<String,String> header : headers.entrySet()) {
             httpRequestBuilder.addHeader(header.getKey(), header.getValue());
         }
+        ChatServiceRequest serviceRequest = request.tag(ChatServiceRequest.class);
+        if (serviceRequest != null) {
+            for (Map.Entry<String,String> header : serviceRequest.getRequestHeaders().entrySet()) {
+                httpRequestBuilder.addHeader(header.getKey(), header.getValue());
+            }
+        }
         return chain.proceed(httpRequestBuilder.build());
     }
 }
@@ -0,0 +1,79 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import edu.stevens.cs522.chat.entities.Message;
+
+public class MessageTypeAdapter extends EntityTypeAdapter<Message> {
+
+    private static final String ID = "id";
+    private static final String CHATROOM = "chatroom";
+    private static final String MESSAGE_TEXT = "messageText";
+    private static final String SEQ_NUM = "seqNum";
+    private static final String APP_ID = "appID";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String LATITUDE = "latitude";
+    private static final String LONGITUDE = "longitude";
+    private static final String SENDER = "sender";
+
+    public MessageTypeAdapter(ExclusionStrategy strategy) {
+        super(Message.class, strategy);
+    }
+
+    @Override
+    protected Message newInstance() {
+        return new Message();
+    }
+
+    @Override
+    protected boolean readField(JsonReader in, String name, Message message) throws IOException {
+        switch (name) {
+            case ID:
+                message.id = readLong(in);
+                return true;
+            case CHATROOM:
+                message.chatroom = readString(in);
+                return true;
+            case MESSAGE_TEXT:
+                message.messageText = readString(in);
+                return true;
+            case SEQ_NUM:
+                message.seqNum = readLong(in);
+                return true;
+            case APP_ID:
+                message.appID = UUID_ADAPTER.read(in);
+                return true;
+            case TIMESTAMP:
+                message.timestamp = TIMESTAMP_ADAPTER.read(in);
+                return true;
+            case LATITUDE:
+                message.latitude = readDouble(in);
+                return true;
+            case LONGITUDE:
+                message.longitude = readDouble(in);
+                return true;
+            case SENDER:
+                message.sender = readString(in);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, Message message) throws IOException {
+        write(out, ID, message.id);
+        write(out, CHATROOM, message.chatroom);
+        write(out, MESSAGE_TEXT, message.messageText);
+        write(out, SEQ_NUM, message.seqNum);
+        write(out, APP_ID, message.appID);
+        write(out, TIMESTAMP, message.timestamp);
+        write(out, LATITUDE, message.latitude);
+        write(out, LONGITUDE, message.longitude);
+        write(out, SENDER, message.sender);
+    }
+}
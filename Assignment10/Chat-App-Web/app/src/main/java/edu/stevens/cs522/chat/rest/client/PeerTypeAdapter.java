@@ -0,0 +1,59 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import edu.stevens.cs522.chat.entities.Peer;
+
+public class PeerTypeAdapter extends EntityTypeAdapter<Peer> {
+
+    private static final String ID = "id";
+    private static final String NAME = "name";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String LATITUDE = "latitude";
+    private static final String LONGITUDE = "longitude";
+
+    public PeerTypeAdapter(ExclusionStrategy strategy) {
+        super(Peer.class, strategy);
+    }
+
+    @Override
+    protected Peer newInstance() {
+        return new Peer();
+    }
+
+    @Override
+    protected boolean readField(JsonReader in, String name, Peer peer) throws IOException {
+        switch (name) {
+            case ID:
+                peer.id = readLong(in);
+                return true;
+            case NAME:
+                peer.name = readString(in);
+                return true;
+            case TIMESTAMP:
+                peer.timestamp = TIMESTAMP_ADAPTER.read(in);
+                return true;
+            case LATITUDE:
+                peer.latitude = readDouble(in);
+                return true;
+            case LONGITUDE:
+                peer.longitude = readDouble(in);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, Peer peer) throws IOException {
+        write(out, ID, peer.id);
+        write(out, NAME, peer.name);
+        write(out, TIMESTAMP, peer.timestamp);
+        write(out, LATITUDE, peer.latitude);
+        write(out, LONGITUDE, peer.longitude);
+    }
+}
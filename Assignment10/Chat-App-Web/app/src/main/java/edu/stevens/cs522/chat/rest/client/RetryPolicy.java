@@ -0,0 +1,132 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+import edu.stevens.cs522.chat.rest.request.ChatServiceRequest.RequestType;
+import okhttp3.Headers;
+
+/**
+ * How often, and how long to wait before, retrying a call to the chat server.
+ *
+ * Delays use "decorrelated jitter": each delay is drawn at random between the base delay and
+ * three times the previous delay (capped), so that devices that failed together do not retry
+ * together.  A Retry-After header from the server overrides the computed delay.
+ */
+public class RetryPolicy {
+
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    /*
+     * Registration is interactive, so give up quickly.  Posting a message is worth a few more
+     * tries.  Sync runs in the background and is rescheduled anyway, so retry least.  Neither a
+     * post nor a sync is idempotent: a sync uploads the unsent messages, and the server does not
+     * recognize messages it has already stored, so repeating it could store them twice.
+     */
+    private static final RetryPolicy REGISTER = new RetryPolicy(3, 500, 5000, true);
+
+    private static final RetryPolicy POST_MESSAGE = new RetryPolicy(4, 500, 15000, false);
+
+    private static final RetryPolicy SYNCHRONIZE = new RetryPolicy(2, 2000, 30000, false);
+
+    // Total number of attempts, including the first
+    private final int maxAttempts;
+
+    // Delays in milliseconds
+    private final long baseDelay;
+
+    private final long maxDelay;
+
+    // Can the call be repeated if it failed after reaching the server?
+    private final boolean idempotent;
+
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, boolean idempotent) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.idempotent = idempotent;
+    }
+
+    public static RetryPolicy forRequestType(RequestType requestType) {
+        switch (requestType) {
+            case REGISTER:
+                return REGISTER;
+            case POST_MESSAGE:
+            case POST_MESSAGES:
+                return POST_MESSAGE;
+            case SYNCHRONIZE:
+                return SYNCHRONIZE;
+            default:
+                throw new IllegalArgumentException("Unknown request type: " + requestType.name());
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Is this HTTP status worth retrying (the server is overloaded or temporarily unavailable)?
+     * A message post or sync is only retried if the server says it did not process the request:
+     * a gateway error (502, 504) may come after the server behind it already has the messages.
+     */
+    public boolean isRetryable(int code) {
+        if (code == 429 || code == 503) {
+            return true;
+        }
+        return idempotent && (code == 502 || code == 504);
+    }
+
+    /**
+     * Does this HTTP status count as a failure of the server, for its circuit breaker?
+     */
+    public static boolean isServerFailure(int code) {
+        return code == 429 || code >= 500;
+    }
+
+    /**
+     * Is this failure worth retrying?  A message post or sync is only retried if it never reached
+     * the server (otherwise, e.g. after a read timeout, the server may already have the messages).
+     */
+    public boolean isRetryable(IOException e) {
+        return idempotent || e instanceof ConnectException || e instanceof UnknownHostException;
+    }
+
+    /**
+     * The delay before the next attempt, given the previous delay (0 before the first retry).
+     */
+    public long nextDelay(long previousDelay) {
+        long upper = Math.max(baseDelay, Math.min(maxDelay, 3 * previousDelay));
+        if (upper <= baseDelay) {
+            return baseDelay;
+        }
+        return ThreadLocalRandom.current().nextLong(baseDelay, upper + 1);
+    }
+
+    /**
+     * The delay the server asked for (in delta-seconds or as an HTTP date), or -1 if none.
+     */
+    public static long getRetryAfter(Headers headers) {
+        String retryAfter = headers.get(RETRY_AFTER_HEADER);
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = headers.getDate(RETRY_AFTER_HEADER);
+            if (date == null) {
+                return -1;
+            }
+            return Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+}
@@ -1,17 +1,27 @@
 package edu.stevens.cs522.chat.rest.client;
 
+import java.util.List;
+
 import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.rest.request.ChatServiceRequest;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
+import retrofit2.http.Tag;
 
 /*
  * The API for the chat server.
  *
+ * Each call is tagged with the request it performs, from which HeaderInterceptor adds
+ * the app-specific request headers.
+ *
  * TODO annotate the methods with HTTP operations and context paths
  */
 public interface ServerApi {
@@ -20,15 +30,46 @@ public interface ServerApi {
 
     public final static String LAST_SEQ_NUM = "last-seq-num";
 
+    public final static String CHATROOM_VERSION = "chatroom-version";
+
+    public final static String PAGE_SIZE = "page-size";
+
+    public final static String CONTENT_ENCODING = "Content-Encoding";
+
+    public final static String ACCEPT = "Accept";
+
+    public final static String IF_NONE_MATCH = "If-None-Match";
+
     @POST("chat")
-    public Call<Void> register( @Query(CHAT_NAME) String chatName);
+    public Call<Void> register(@Query(CHAT_NAME) String chatName, @Tag ChatServiceRequest request);
 
     @POST("chat/{chat-name}/messages")
-    public Call<Void> postMessage(@Path(CHAT_NAME) String chatName, @Body Message chatMessage);
+    public Call<Void> postMessage(@Path(CHAT_NAME) String chatName, @Body Message chatMessage, @Tag ChatServiceRequest request);
+
+    /*
+     * Post a batch of messages, the response body is the list of sequence numbers assigned (in order).
+     */
+    @POST("chat/{chat-name}/messages/batch")
+    public Call<List<Long>> postMessages(@Path(CHAT_NAME) String chatName, @Body List<Message> chatMessages, @Tag ChatServiceRequest request);
+
+    /*
+     * Stream of notifications (Server-Sent Events) of changes since the last sequence number.
+     */
+    @Streaming
+    @GET("chat/{chat-name}/events")
+    public Call<ResponseBody> events(@Path(CHAT_NAME) String chatName,
+                                     @Query(LAST_SEQ_NUM) long lastSeqNum,
+                                     @Header(ACCEPT) String accept);
 
     @POST("chat/{chat-name}/sync")
     public Call<ResponseBody> syncMessages(@Path(CHAT_NAME) String chatName,
                                            @Query(LAST_SEQ_NUM) long lastSeqNum,
-                                           @Body RequestBody requestBody);
+                                           @Query(CHATROOM_VERSION) String chatroomVersion,
+                                           @Query(PAGE_SIZE) int pageSize,
+                                           @Header(CONTENT_ENCODING) String contentEncoding,
+                                           @Header(ACCEPT) String accept,
+                                           @Header(IF_NONE_MATCH) String ifNoneMatch,
+                                           @Body RequestBody requestBody,
+                                           @Tag ChatServiceRequest request);
 
 }
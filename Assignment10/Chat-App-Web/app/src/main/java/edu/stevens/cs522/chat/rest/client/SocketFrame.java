@@ -0,0 +1,36 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import edu.stevens.cs522.chat.entities.Message;
+
+/**
+ * A frame exchanged with the chat server over the WebSocket transport (as JSON text):
+ *
+ * post:    a message sent by this device (id is the local primary key)
+ * ack:     the server accepted a posted message (id is the local primary key, seqNum assigned)
+ * message: a message posted by another peer (or by this app on another connection)
+ */
+public class SocketFrame {
+
+    public static final String POST = "post";
+
+    public static final String ACK = "ack";
+
+    public static final String MESSAGE = "message";
+
+    public String type;
+
+    public long id;
+
+    public long seqNum;
+
+    public Message message;
+
+    public SocketFrame() { }
+
+    public SocketFrame(String type, Message message) {
+        this.type = type;
+        this.id = message.id;
+        this.message = message;
+    }
+
+}
@@ -24,6 +24,16 @@ public class StreamingResponse {
         return responseBody.byteStream();
     }
 
+    /**
+     * The MIME type of the download stream (null if the server did not specify it).
+     */
+    public String getContentType() {
+        if (responseBody == null || responseBody.contentType() == null) {
+            return null;
+        }
+        return responseBody.contentType().toString();
+    }
+
     public ChatServiceResponse getResponse() {
         return response;
     }
@@ -1,27 +1,34 @@
 package edu.stevens.cs522.chat.rest.client;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.Date;
 
-public class TimestampSerializer implements JsonSerializer<Date>, JsonDeserializer<Date> {
+/*
+ * Streaming adapter: timestamps are exchanged as milliseconds since the epoch, read and written
+ * directly on the stream without building an intermediate JsonPrimitive.
+ */
+public class TimestampSerializer extends TypeAdapter<Date> {
 
     @Override
-    public JsonElement serialize(Date src, Type typeOfSrc, JsonSerializationContext context) {
-        return new JsonPrimitive(src.getTime());
+    public void write(JsonWriter out, Date src) throws IOException {
+        if (src == null) {
+            out.nullValue();
+        } else {
+            out.value(src.getTime());
+        }
     }
 
     @Override
-    public Date deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-            throws JsonParseException {
-        long timestamp = json.getAsJsonPrimitive().getAsLong();
-        return new Date(timestamp);
+    public Date read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return new Date(in.nextLong());
     }
-}
\ No newline at end of file
+}
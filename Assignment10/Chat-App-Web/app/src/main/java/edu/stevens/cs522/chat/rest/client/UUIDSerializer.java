@@ -1,28 +1,33 @@
 package edu.stevens.cs522.chat.rest.client;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
-import java.lang.reflect.Type;
-import java.util.Date;
+import java.io.IOException;
 import java.util.UUID;
 
-public class UUIDSerializer implements JsonSerializer<UUID>, JsonDeserializer<UUID> {
+/*
+ * Streaming adapter: UUIDs are exchanged in their string form.
+ */
+public class UUIDSerializer extends TypeAdapter<UUID> {
 
     @Override
-    public JsonElement serialize(UUID id, Type typeOfSrc, JsonSerializationContext context) {
-        return new JsonPrimitive(id.toString());
+    public void write(JsonWriter out, UUID id) throws IOException {
+        if (id == null) {
+            out.nullValue();
+        } else {
+            out.value(id.toString());
+        }
     }
 
     @Override
-    public UUID deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-            throws JsonParseException {
-        String id = json.getAsJsonPrimitive().getAsString();
-        return UUID.fromString(id);
+    public UUID read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return UUID.fromString(in.nextString());
     }
-}
\ No newline at end of file
+}
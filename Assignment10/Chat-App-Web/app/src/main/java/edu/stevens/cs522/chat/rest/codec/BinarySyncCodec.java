@@ -0,0 +1,319 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+
+/**
+ * A compact binary wire format for synchronization, with the same sections as the JSON format.
+ *
+ * The stream starts with a magic number and a format version.  Each section is a sequence
+ * of records, each prefixed by its length in bytes, and terminated by a zero length.  Fields are
+ * written in a fixed order (big-endian, as by DataOutput), so there are no field names, and
+ * timestamps are binary longs.  A reader ignores any bytes at the end of a record that it does
+ * not understand, so fields may be added to the end of a record in later versions.  A record
+ * may be at most 1MB long.
+ */
+public class BinarySyncCodec implements SyncCodec {
+
+    public static final String MEDIA_TYPE = "application/x-chat-sync";
+
+    private static final int MAGIC = 0x43534e43;
+
+    private static final int VERSION = 1;
+
+    private static final int END_OF_SECTION = 0;
+
+    private static final int NULL_LENGTH = -1;
+
+    /*
+     * Lengths are read from the network, so they are checked before anything is allocated.
+     */
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public SyncEncoder newEncoder(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        return new Encoder(out);
+    }
+
+    /*
+     * The download stream, as the server writes it: the peers section, then the same sections
+     * as an upload.  Only the tests write a download, so that they use the same record format.
+     */
+    Encoder newDownloadEncoder(OutputStream os) throws IOException {
+        return (Encoder) newEncoder(os);
+    }
+
+    @Override
+    public SyncDecoder newDecoder(InputStream is) throws IOException {
+        return new Decoder(new DataInputStream(new BufferedInputStream(is)));
+    }
+
+    /*
+     * Field encodings.
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        } else if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length in synchronization download: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutput out, Date value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getTime());
+        }
+    }
+
+    private static Date readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? new Date(in.readLong()) : null;
+    }
+
+    private static void writeDouble(DataOutput out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static Double readDouble(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    private static void writeUUID(DataOutput out, UUID value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUUID(DataInput in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    static class Encoder implements SyncEncoder {
+
+        private final DataOutputStream out;
+
+        // Each record is written here first, so it can be prefixed with its length
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private final DataOutputStream record = new DataOutputStream(buffer);
+
+        private Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void endRecord() throws IOException {
+            record.flush();
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+            buffer.reset();
+        }
+
+        void writePeer(Peer peer) throws IOException {
+            record.writeLong(peer.id);
+            writeString(record, peer.name);
+            writeDate(record, peer.timestamp);
+            writeDouble(record, peer.latitude);
+            writeDouble(record, peer.longitude);
+            endRecord();
+        }
+
+        void endPeers() throws IOException {
+            out.writeInt(END_OF_SECTION);
+        }
+
+        @Override
+        public void beginChatrooms() {
+        }
+
+        @Override
+        public void writeChatroom(Chatroom chatroom) throws IOException {
+            record.writeLong(chatroom.id);
+            writeString(record, chatroom.name);
+            endRecord();
+        }
+
+        @Override
+        public void endChatrooms() throws IOException {
+            out.writeInt(END_OF_SECTION);
+        }
+
+        @Override
+        public void beginMessages() {
+        }
+
+        @Override
+        public void writeMessage(Message message) throws IOException {
+            record.writeLong(message.id);
+            writeString(record, message.chatroom);
+            writeString(record, message.messageText);
+            record.writeLong(message.seqNum);
+            writeUUID(record, message.appID);
+            writeDate(record, message.timestamp);
+            writeDouble(record, message.latitude);
+            writeDouble(record, message.longitude);
+            writeString(record, message.sender);
+            endRecord();
+        }
+
+        @Override
+        public void endMessages() throws IOException {
+            out.writeInt(END_OF_SECTION);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class Decoder implements SyncDecoder {
+
+        private static final int PEERS_SECTION = 0;
+
+        private static final int CHATROOMS_SECTION = 1;
+
+        private static final int MESSAGES_SECTION = 2;
+
+        private final DataInputStream in;
+
+        private boolean started = false;
+
+        // The section currently being read
+        private int section = PEERS_SECTION;
+
+        private byte[] buffer = new byte[256];
+
+        private Decoder(DataInputStream in) {
+            this.in = in;
+        }
+
+        /*
+         * Read the next record in the given section, or return null at the end of the section.
+         */
+        private DataInputStream nextRecord(int next) throws IOException {
+            if (!started) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a binary synchronization stream.");
+                }
+                int version = in.readByte();
+                if (version < 1 || version > VERSION) {
+                    throw new IOException("Unsupported synchronization format version: " + version);
+                }
+                started = true;
+            }
+            if (next < section) {
+                return null;
+            } else if (next > section) {
+                throw new IllegalStateException("Sections must be read in order, next section: " + next);
+            }
+            int length = in.readInt();
+            if (length == END_OF_SECTION) {
+                section++;
+                return null;
+            } else if (length < 0 || length > MAX_RECORD_SIZE) {
+                throw new IOException("Invalid record length in synchronization download: " + length);
+            }
+            if (length > buffer.length) {
+                buffer = new byte[Math.max(length, 2 * buffer.length)];
+            }
+            in.readFully(buffer, 0, length);
+            return new DataInputStream(new ByteArrayInputStream(buffer, 0, length));
+        }
+
+        @Override
+        public Peer readPeer() throws IOException {
+            DataInputStream record = nextRecord(PEERS_SECTION);
+            if (record == null) {
+                return null;
+            }
+            Peer peer = new Peer();
+            peer.id = record.readLong();
+            peer.name = readString(record);
+            peer.timestamp = readDate(record);
+            peer.latitude = readDouble(record);
+            peer.longitude = readDouble(record);
+            return peer;
+        }
+
+        @Override
+        public Chatroom readChatroom() throws IOException {
+            DataInputStream record = nextRecord(CHATROOMS_SECTION);
+            if (record == null) {
+                return null;
+            }
+            Chatroom chatroom = new Chatroom();
+            chatroom.id = record.readLong();
+            chatroom.name = readString(record);
+            return chatroom;
+        }
+
+        @Override
+        public Message readMessage() throws IOException {
+            DataInputStream record = nextRecord(MESSAGES_SECTION);
+            if (record == null) {
+                return null;
+            }
+            Message message = new Message();
+            message.id = record.readLong();
+            message.chatroom = readString(record);
+            message.messageText = readString(record);
+            message.seqNum = record.readLong();
+            message.appID = readUUID(record);
+            message.timestamp = readDate(record);
+            message.latitude = readDouble(record);
+            message.longitude = readDouble(record);
+            message.sender = readString(record);
+            return message;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
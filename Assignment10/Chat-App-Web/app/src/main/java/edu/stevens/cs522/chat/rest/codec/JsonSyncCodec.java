@@ -0,0 +1,200 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.RestMethod;
+
+/**
+ * The JSON wire format for synchronization (the default, and the fallback if the server
+ * does not support any other format):
+ *
+ * upload:   { "chatrooms" : [ ... ], "messages" : [ ... ] }
+ * download: { "peers" : [ ... ], "chatrooms" : [ ... ], "messages" : [ ... ] }
+ */
+public class JsonSyncCodec implements SyncCodec {
+
+    private final Gson gson;
+
+    private final TypeAdapter<Peer> peerAdapter;
+
+    private final TypeAdapter<Chatroom> chatroomAdapter;
+
+    private final TypeAdapter<Message> messageAdapter;
+
+    public JsonSyncCodec(Gson gson) {
+        this.gson = gson;
+        this.peerAdapter = gson.getAdapter(Peer.class);
+        this.chatroomAdapter = gson.getAdapter(Chatroom.class);
+        this.messageAdapter = gson.getAdapter(Message.class);
+    }
+
+    @Override
+    public String getMediaType() {
+        return RestMethod.JSON_TYPE;
+    }
+
+    @Override
+    public SyncEncoder newEncoder(OutputStream os) throws IOException {
+        JsonWriter wr = gson.newJsonWriter(new OutputStreamWriter(new BufferedOutputStream(os), RestMethod.CHARSET));
+        wr.beginObject();
+        return new Encoder(wr);
+    }
+
+    @Override
+    public SyncDecoder newDecoder(InputStream is) throws IOException {
+        return new Decoder(gson.newJsonReader(new InputStreamReader(new BufferedInputStream(is), RestMethod.CHARSET)));
+    }
+
+    private class Encoder implements SyncEncoder {
+
+        private final JsonWriter wr;
+
+        private Encoder(JsonWriter wr) {
+            this.wr = wr;
+        }
+
+        @Override
+        public void beginChatrooms() throws IOException {
+            wr.name(RestMethod.CHATROOMS);
+            wr.beginArray();
+        }
+
+        @Override
+        public void writeChatroom(Chatroom chatroom) throws IOException {
+            chatroomAdapter.write(wr, chatroom);
+        }
+
+        @Override
+        public void endChatrooms() throws IOException {
+            wr.endArray();
+        }
+
+        @Override
+        public void beginMessages() throws IOException {
+            wr.name(RestMethod.MESSAGES);
+            wr.beginArray();
+        }
+
+        @Override
+        public void writeMessage(Message message) throws IOException {
+            messageAdapter.write(wr, message);
+        }
+
+        @Override
+        public void endMessages() throws IOException {
+            wr.endArray();
+            wr.endObject();
+            wr.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            wr.close();
+        }
+    }
+
+    private class Decoder implements SyncDecoder {
+
+        private static final int PEERS_SECTION = 0;
+
+        private static final int CHATROOMS_SECTION = 1;
+
+        private static final int MESSAGES_SECTION = 2;
+
+        private final JsonReader rd;
+
+        // The last section started, and whether we are still reading it
+        private int section = -1;
+
+        private boolean inSection = false;
+
+        private Decoder(JsonReader rd) {
+            this.rd = rd;
+        }
+
+        /*
+         * Start reading a section if necessary, returning false if it has already been read.
+         */
+        private boolean enter(int next, String label) throws IOException {
+            if (next < section || (next == section && !inSection)) {
+                return false;
+            }
+            if (next > section) {
+                if (section < 0) {
+                    rd.beginObject();
+                }
+                String name = rd.nextName();
+                if (!label.equals(name)) {
+                    throw new IOException("Expected '" + label + "', unexpected JSON label: " + name);
+                }
+                rd.beginArray();
+                section = next;
+                inSection = true;
+            }
+            return true;
+        }
+
+        private <T> T read(int next, String label, TypeAdapter<T> adapter) throws IOException {
+            if (next > section && (inSection || next != section + 1)) {
+                throw new IllegalStateException("Sections must be read in order, next section: " + label);
+            }
+            try {
+                if (!enter(next, label)) {
+                    return null;
+                }
+                if (rd.peek() == JsonToken.END_ARRAY) {
+                    rd.endArray();
+                    inSection = false;
+                    if (next == MESSAGES_SECTION) {
+                        rd.endObject();
+                    }
+                    return null;
+                }
+                return adapter.read(rd);
+            } catch (RuntimeException e) {
+                /*
+                 * Gson and the type adapters report malformed input with unchecked exceptions
+                 * (e.g. IllegalArgumentException for an invalid UUID), which must not escape
+                 * to the sync worker.
+                 */
+                throw new IOException("Malformed JSON in synchronization download.", e);
+            }
+        }
+
+        @Override
+        public Peer readPeer() throws IOException {
+            return read(PEERS_SECTION, RestMethod.PEERS, peerAdapter);
+        }
+
+        @Override
+        public Chatroom readChatroom() throws IOException {
+            return read(CHATROOMS_SECTION, RestMethod.CHATROOMS, chatroomAdapter);
+        }
+
+        @Override
+        public Message readMessage() throws IOException {
+            return read(MESSAGES_SECTION, RestMethod.MESSAGES, messageAdapter);
+        }
+
+        @Override
+        public void close() throws IOException {
+            rd.close();
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * For SYNC: a wire format for the streams of peers, chatrooms and messages exchanged with the
+ * server during synchronization.  The request processor only deals with entities, so it does
+ * not care which format is negotiated with the server.
+ */
+public interface SyncCodec {
+
+    /**
+     * The MIME type for this format, used in the Content-Type and Accept headers.
+     */
+    public String getMediaType();
+
+    public SyncEncoder newEncoder(OutputStream os) throws IOException;
+
+    public SyncDecoder newDecoder(InputStream is) throws IOException;
+
+}
@@ -0,0 +1,45 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import com.google.gson.Gson;
+
+/**
+ * The wire formats supported for synchronization.  JSON is the default, and the fallback
+ * for a server that does not (or does not say that it does) support the binary format.
+ */
+public class SyncCodecs {
+
+    private final SyncCodec json;
+
+    private final SyncCodec binary;
+
+    public SyncCodecs(Gson gson) {
+        this.json = new JsonSyncCodec(gson);
+        this.binary = new BinarySyncCodec();
+    }
+
+    public SyncCodec getDefault() {
+        return json;
+    }
+
+    /**
+     * Value for the Accept header, in order of preference.
+     */
+    public String getAccept() {
+        return binary.getMediaType() + ", " + json.getMediaType() + ";q=0.5";
+    }
+
+    /**
+     * The codec for a Content-Type, ignoring any parameters (e.g. charset).
+     */
+    public SyncCodec forMediaType(String contentType) {
+        if (contentType != null) {
+            int ix = contentType.indexOf(';');
+            String mediaType = (ix < 0 ? contentType : contentType.substring(0, ix)).trim();
+            if (binary.getMediaType().equalsIgnoreCase(mediaType)) {
+                return binary;
+            }
+        }
+        return json;
+    }
+
+}
@@ -0,0 +1,23 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+
+/**
+ * For SYNC: reads the download stream, which contains peers, then chatrooms, then messages.
+ * Each read operation returns null at the end of its section, and sections must be read in order.
+ * Malformed input is reported as an IOException.
+ */
+public interface SyncDecoder extends Closeable {
+
+    public Peer readPeer() throws IOException;
+
+    public Chatroom readChatroom() throws IOException;
+
+    public Message readMessage() throws IOException;
+
+}
@@ -0,0 +1,27 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+
+/**
+ * For SYNC: writes the upload stream (new chatrooms, then unsent messages).
+ * The stream is complete after endMessages(), closing the encoder closes the output stream.
+ */
+public interface SyncEncoder extends Closeable {
+
+    public void beginChatrooms() throws IOException;
+
+    public void writeChatroom(Chatroom chatroom) throws IOException;
+
+    public void endChatrooms() throws IOException;
+
+    public void beginMessages() throws IOException;
+
+    public void writeMessage(Message message) throws IOException;
+
+    public void endMessages() throws IOException;
+
+}
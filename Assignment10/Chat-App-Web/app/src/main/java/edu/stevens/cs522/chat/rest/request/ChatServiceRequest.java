@@ -26,6 +26,7 @@ public abstract class ChatServiceRequest implements Parcelable {
     public static enum RequestType {
         REGISTER("Register"),
         POST_MESSAGE("Post Message"),
+        POST_MESSAGES("Post Messages"),
         SYNCHRONIZE("Synchronize");
         private final String value;
         private RequestType(String value) {
@@ -170,6 +171,8 @@ public abstract class ChatServiceRequest implements Parcelable {
                 return new RegisterRequest(in);
             case POST_MESSAGE:
                 return new PostMessageRequest(in);
+            case POST_MESSAGES:
+                return new PostMessagesRequest(in);
             case SYNCHRONIZE:
                 return new SynchronizeRequest(in);
             default:
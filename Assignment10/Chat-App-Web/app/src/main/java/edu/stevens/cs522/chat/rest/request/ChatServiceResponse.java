@@ -21,6 +21,7 @@ public abstract class ChatServiceResponse implements Parcelable {
         DUMMY,
         REGISTER,
         POSTMESSAGE,
+        POSTMESSAGES,
         SYNCHRONIZE
     }
 
@@ -103,6 +104,8 @@ public abstract class ChatServiceResponse implements Parcelable {
                 return new RegisterResponse(in);
             case POSTMESSAGE:
                 return new PostMessageResponse(in);
+            case POSTMESSAGES:
+                return new PostMessagesResponse(in);
             case SYNCHRONIZE:
                 return new SynchronizeResponse(in);
             default:
@@ -0,0 +1,83 @@
+package edu.stevens.cs522.chat.rest.request;
+
+import android.os.Parcel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stevens.cs522.base.EnumUtils;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.rest.RequestProcessor;
+import retrofit2.Response;
+
+/**
+ * Post a batch of messages (posted within a short interval of each other) in a single call.
+ */
+
+public class PostMessagesRequest extends ChatServiceRequest {
+
+    public List<Message> messages;
+
+    public PostMessagesRequest(List<Message> messages) {
+        super();
+        this.messages = messages;
+    }
+
+    @Override
+    public ChatServiceResponse getResponse(Response<?> response) throws IOException {
+        if (response.isSuccessful()) {
+            try {
+                return new PostMessagesResponse(response);
+            } catch (IOException e) {
+                // The server accepted the post but did not say which sequence numbers it assigned.
+                return new ErrorResponse(response.code(), ErrorResponse.Status.SERVER_ERROR, e.getMessage());
+            }
+        } else {
+            return getErrorResponse(response);
+        }
+    }
+
+    public ChatServiceResponse getDummyResponse() {
+        return new DummyResponse();
+    }
+
+    @Override
+    public ChatServiceResponse process(RequestProcessor processor) {
+        return processor.perform(this);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        EnumUtils.writeEnum(dest, RequestType.POST_MESSAGES);
+        super.writeToParcel(dest, flags);
+        dest.writeTypedList(messages);
+    }
+
+    public PostMessagesRequest(Parcel in) {
+        super(in);
+        this.messages = in.createTypedArrayList(Message.CREATOR);
+        if (this.messages == null) {
+            this.messages = new ArrayList<>();
+        }
+    }
+
+    public static Creator<PostMessagesRequest> CREATOR = new Creator<PostMessagesRequest>() {
+        @Override
+        public PostMessagesRequest createFromParcel(Parcel in) {
+            EnumUtils.readEnum(RequestType.class, in);
+            return new PostMessagesRequest(in);
+        }
+
+        @Override
+        public PostMessagesRequest[] newArray(int size) {
+            return new PostMessagesRequest[size];
+        }
+    };
+
+}
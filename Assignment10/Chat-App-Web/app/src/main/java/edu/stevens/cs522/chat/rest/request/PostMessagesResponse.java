@@ -0,0 +1,100 @@
+package edu.stevens.cs522.chat.rest.request;
+
+import android.net.Uri;
+import android.os.Parcel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stevens.cs522.base.EnumUtils;
+import retrofit2.Response;
+
+/**
+ * The response to a batch post: the sequence numbers assigned by the server, in the
+ * same order as the messages in the request.  A batch of one message is posted to the
+ * single message endpoint, which returns the sequence number in the Location header.
+ */
+
+public class PostMessagesResponse extends ChatServiceResponse {
+
+    protected final static String LOCATION = "Location";
+
+    // assigned by server
+    protected List<Long> messageIds;
+
+    public PostMessagesResponse(Response<?> response) throws IOException {
+        super(response);
+
+        messageIds = new ArrayList<>();
+        Object body = response.body();
+        if (body instanceof List) {
+            for (Object id : (List<?>) body) {
+                if (id instanceof Number) {
+                    messageIds.add(((Number) id).longValue());
+                }
+            }
+        } else {
+            messageIds.add(parseLocation(response.headers().get(LOCATION)));
+        }
+    }
+
+    /*
+     * The sequence number is the last segment of the URI of the new message.
+     */
+    private static long parseLocation(String location) throws IOException {
+        if (location == null) {
+            throw new IOException("Missing " + LOCATION + " header in response to message post.");
+        }
+        String segment = Uri.parse(location).getLastPathSegment();
+        try {
+            return Long.parseLong(segment);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed " + LOCATION + " header in response to message post: " + location, e);
+        }
+    }
+
+    public List<Long> getMessageIds() {
+        return messageIds;
+    }
+
+    @Override
+    public boolean isValid() { return true; }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        EnumUtils.writeEnum(dest, ResponseType.POSTMESSAGES);
+        super.writeToParcel(dest, flags);
+        dest.writeInt(messageIds.size());
+        for (long id : messageIds) {
+            dest.writeLong(id);
+        }
+    }
+
+    public PostMessagesResponse(Parcel in) {
+        super(in);
+        int count = in.readInt();
+        messageIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messageIds.add(in.readLong());
+        }
+    }
+
+    public static Creator<PostMessagesResponse> CREATOR = new Creator<PostMessagesResponse>() {
+        @Override
+        public PostMessagesResponse createFromParcel(Parcel in) {
+            EnumUtils.readEnum(ResponseType.class, in);
+            return new PostMessagesResponse(in);
+        }
+
+        @Override
+        public PostMessagesResponse[] newArray(int size) {
+            return new PostMessagesResponse[size];
+        }
+    };
+}
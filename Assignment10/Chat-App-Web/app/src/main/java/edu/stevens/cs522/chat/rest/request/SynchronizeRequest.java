@@ -17,13 +17,22 @@ public class SynchronizeRequest extends ChatServiceRequest {
     // Added by request processor
     public long lastSequenceNumber;
 
+    // Version of the chatroom list last downloaded from the server (null for the full list)
+    public String chatroomVersion;
+
+    // Maximum number of messages the server should download in one response
+    public int pageSize;
+
+    // Tag from the last complete sync, if we have nothing to upload (null for an unconditional sync)
+    public String syncTag;
+
     public SynchronizeRequest() {
         super();
     }
 
     @Override
     public ChatServiceResponse getResponse(Response<?> response) throws IOException{
-        if (response.isSuccessful()) {
+        if (response.isSuccessful() || response.code() == SynchronizeResponse.HTTP_NOT_MODIFIED) {
             return new SynchronizeResponse(response);
         } else {
             return getErrorResponse(response);
@@ -45,11 +54,31 @@ public class SynchronizeRequest extends ChatServiceRequest {
         EnumUtils.writeEnum(dest, RequestType.SYNCHRONIZE);
         super.writeToParcel(dest, flags);
         dest.writeLong(lastSequenceNumber);
+        if (chatroomVersion != null) {
+            dest.writeByte((byte) 1);
+            dest.writeString(chatroomVersion);
+        } else {
+            dest.writeByte((byte) 0);
+        }
+        dest.writeInt(pageSize);
+        if (syncTag != null) {
+            dest.writeByte((byte) 1);
+            dest.writeString(syncTag);
+        } else {
+            dest.writeByte((byte) 0);
+        }
     }
 
     public SynchronizeRequest(Parcel in) {
         super(in);
         lastSequenceNumber = in.readLong();
+        if (in.readByte() != 0) {
+            chatroomVersion = in.readString();
+        }
+        pageSize = in.readInt();
+        if (in.readByte() != 0) {
+            syncTag = in.readString();
+        }
     }
 
     public static Creator<SynchronizeRequest> CREATOR = new Creator<SynchronizeRequest>() {
@@ -16,8 +16,46 @@ public class SynchronizeResponse extends ChatServiceResponse {
 
     public static final String ID_LABEL = "id";
 
+    public static final String CHATROOM_VERSION_HEADER = "X-Chatroom-Version";
+
+    public static final String NEXT_SEQ_NUM_HEADER = "X-Next-Seq-Num";
+
+    public static final String ETAG_HEADER = "ETag";
+
+    public static final int HTTP_NOT_MODIFIED = 304;
+
+    // Version of the server chatroom list, relative to which the next sync receives a delta
+    public String chatroomVersion;
+
+    // If the server limited the download, the sequence number from which the next page continues
+    public long nextSequenceNumber;
+
+    // Tag for the server state after this sync
+    public String syncTag;
+
+    // Nothing has changed on the server since the tag we sent (there is no response body)
+    public boolean notModified;
+
     public SynchronizeResponse(Response<?> response) throws IOException {
         super(response);
+        notModified = response.code() == HTTP_NOT_MODIFIED;
+        syncTag = response.headers().get(ETAG_HEADER);
+        chatroomVersion = response.headers().get(CHATROOM_VERSION_HEADER);
+        String nextSeqNum = response.headers().get(NEXT_SEQ_NUM_HEADER);
+        if (nextSeqNum != null) {
+            try {
+                nextSequenceNumber = Long.parseLong(nextSeqNum.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid " + NEXT_SEQ_NUM_HEADER + " header: " + nextSeqNum, e);
+            }
+        }
+    }
+
+    /**
+     * Are there more messages to download (in another page)?
+     */
+    public boolean hasMore() {
+        return nextSequenceNumber > 0;
     }
 
     @Override
@@ -32,10 +70,32 @@ public class SynchronizeResponse extends ChatServiceResponse {
     public void writeToParcel(Parcel dest, int flags) {
         EnumUtils.writeEnum(dest, ResponseType.SYNCHRONIZE);
         super.writeToParcel(dest, flags);
+        if (chatroomVersion != null) {
+            dest.writeByte((byte) 1);
+            dest.writeString(chatroomVersion);
+        } else {
+            dest.writeByte((byte) 0);
+        }
+        dest.writeLong(nextSequenceNumber);
+        if (syncTag != null) {
+            dest.writeByte((byte) 1);
+            dest.writeString(syncTag);
+        } else {
+            dest.writeByte((byte) 0);
+        }
+        dest.writeByte((byte) (notModified ? 1 : 0));
     }
 
     public SynchronizeResponse(Parcel in) {
         super(in);
+        if (in.readByte() != 0) {
+            chatroomVersion = in.readString();
+        }
+        nextSequenceNumber = in.readLong();
+        if (in.readByte() != 0) {
+            syncTag = in.readString();
+        }
+        notModified = in.readByte() != 0;
     }
 
     public static Creator<SynchronizeResponse> CREATOR = new Creator<SynchronizeResponse>() {
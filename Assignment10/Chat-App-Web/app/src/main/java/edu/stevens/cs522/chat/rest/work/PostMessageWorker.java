@@ -1,74 +1,51 @@
 package edu.stevens.cs522.chat.rest.work;
 
-import android.app.Activity;
 import android.content.Context;
 import android.os.Bundle;
-import android.os.ResultReceiver;
 import android.util.Log;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
-import androidx.work.ListenableWorker.Result;
 
 import edu.stevens.cs522.base.work.Worker;
-import edu.stevens.cs522.chat.entities.Message;
 import edu.stevens.cs522.chat.rest.RequestProcessor;
+import edu.stevens.cs522.chat.rest.client.CircuitBreaker;
 import edu.stevens.cs522.chat.rest.request.ChatServiceResponse;
 import edu.stevens.cs522.chat.rest.request.ErrorResponse;
-import edu.stevens.cs522.chat.rest.request.PostMessageRequest;
 
+/**
+ * Drains the outbox of messages waiting to be posted.  The input only identifies the messages
+ * that prompted the drain (the messages themselves are read from the database), and the worker
+ * sends everything in the outbox, in order.
+ */
 public class PostMessageWorker extends Worker {
 
     private static final String TAG = PostMessageWorker.class.getCanonicalName();
 
-    public static final String MESSAGE_KEY = "message";
+    public static final String MESSAGE_IDS_KEY = "message-ids";
 
-    public static final String RESULT_RECEIVER_KEY = "receiver";
-
-    private final Message message;
-
-    private final ResultReceiver receiver;
+    private final long[] messageIds;
 
     public PostMessageWorker(@NonNull Context context, @NonNull Bundle data) {
         super(context, data);
 
-        message = data.getParcelable(MESSAGE_KEY);
-        if (message == null) {
-            throw new IllegalStateException("Missing message for post message worker!");
-        }
-
-        receiver = data.getParcelable(RESULT_RECEIVER_KEY);
+        long[] ids = data.getLongArray(MESSAGE_IDS_KEY);
+        messageIds = ids != null ? ids : new long[0];
     }
 
     @Override
     public boolean doWork() {
 
-        PostMessageRequest postMessageRequest = new PostMessageRequest(message);
+        Log.d(TAG, String.format("Draining outbox for %d new messages.", messageIds.length));
 
         RequestProcessor processor = RequestProcessor.getInstance(context);
 
-        ChatServiceResponse response = processor.process(postMessageRequest);
-
-        if (receiver != null) {
-            // Use receiver to call back to UI
-
-            if (response instanceof ErrorResponse) {
-                Log.d(TAG, String.format("Failed to send message ('%s'): %s", message.messageText, response.httpResponseMessage));
-                // TODO let activity know request failed
-                Toast.makeText(context, "request failed", Toast.LENGTH_SHORT).show();
-                receiver.send(Activity.RESULT_CANCELED, null);
-            } else {
-                Log.d(TAG, String.format("Message sent ('%s')!", message.messageText));
-                // TODO let activity know request succeeded
-                Toast.makeText(context, "request succeeded", Toast.LENGTH_SHORT).show();
-                receiver.send(Activity.RESULT_OK, null);
-            }
-        } else {
-            Log.d(TAG, "Missing receiver");
-        }
+        ChatServiceResponse response = processor.drainOutbox();
+
+        // The receivers of the messages are called back by the batcher.
 
         if (response instanceof ErrorResponse) {
-            Log.i(TAG, "Failed to upload chat message: "+response.httpResponseMessage);
+            Log.i(TAG, "Failed to upload chat messages: "+response.httpResponseMessage);
+            Log.i(TAG, "Circuit breakers: " + CircuitBreaker.getStates());
             return false;
         }
 
@@ -8,7 +8,10 @@ import androidx.annotation.NonNull;
 import androidx.work.ListenableWorker.Result;
 
 import edu.stevens.cs522.base.work.Worker;
+import edu.stevens.cs522.chat.rest.PushChannel;
 import edu.stevens.cs522.chat.rest.RequestProcessor;
+import edu.stevens.cs522.chat.rest.SyncScheduler;
+import edu.stevens.cs522.chat.rest.client.CircuitBreaker;
 import edu.stevens.cs522.chat.rest.request.ChatServiceResponse;
 import edu.stevens.cs522.chat.rest.request.ErrorResponse;
 import edu.stevens.cs522.chat.rest.request.SynchronizeRequest;
@@ -23,14 +26,32 @@ public class SynchronizeWorker extends Worker {
 
     @Override
     public boolean doWork() {
-        SynchronizeRequest synchronizeRequest = new SynchronizeRequest();
-
         RequestProcessor processor = RequestProcessor.getInstance(context);
 
+        /*
+         * The work runs at the shortest interval for the network, the scheduler says whether
+         * the interval for the current chat activity has passed.
+         */
+        if (!SyncScheduler.getInstance(context).onPeriodicSync()) {
+            return true;
+        }
+
+        /*
+         * While the push channel is up, it tells us when to download (and triggers a sync),
+         * so periodic sync is only needed to upload local changes.
+         */
+        if (PushChannel.isConnected() && !processor.hasLocalChanges()) {
+            Log.d(TAG, "Push channel connected and nothing to upload, skipping periodic sync.");
+            return true;
+        }
+
+        SynchronizeRequest synchronizeRequest = new SynchronizeRequest();
+
         ChatServiceResponse response = processor.process(synchronizeRequest);
 
         if (response instanceof ErrorResponse) {
             Log.i(TAG, "Failed to sync chat messages, will retry: "+response.httpResponseMessage);
+            Log.i(TAG, "Circuit breakers: " + CircuitBreaker.getStates());
             return false;
         }
 
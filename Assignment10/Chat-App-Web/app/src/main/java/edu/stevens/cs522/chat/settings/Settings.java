@@ -10,6 +10,7 @@ import androidx.preference.PreferenceManager;
 import java.util.UUID;
 
 import edu.stevens.cs522.chat.R;
+import edu.stevens.cs522.chat.databases.DatabaseProfile;
 
 public class Settings {
 
@@ -41,6 +42,54 @@ public class Settings {
      */
     private static final String CHAT_NAME_KEY = "user-name";
 
+    /*
+     * Number of records downloaded during synchronization that are committed in a single transaction.
+     */
+    private static final String SYNC_BATCH_SIZE_KEY = "sync-batch-size";
+
+    public static final int DEFAULT_SYNC_BATCH_SIZE = 500;
+
+    /*
+     * Maximum number of messages downloaded from the server in one sync response (page).
+     * There is no screen for it: it is tuned for a device in its preferences file.
+     */
+    private static final String SYNC_PAGE_SIZE_KEY = "sync-page-size";
+
+    public static final int DEFAULT_SYNC_PAGE_SIZE = 2000;
+
+    /*
+     * Prefix of the key for whether uploads to a chat server are gzip-compressed.
+     */
+    private static final String GZIP_UPLOAD_KEY_PREFIX = "gzip-upload:";
+
+    /*
+     * Prefix of the key for the sync wire format last used by a chat server.
+     */
+    private static final String SYNC_FORMAT_KEY_PREFIX = "sync-format:";
+
+    /*
+     * Messages posted within this many milliseconds of each other are sent in a single request.
+     * There is no screen for it: it is tuned for a device in its preferences file.
+     */
+    private static final String POST_WINDOW_KEY = "post-window";
+
+    public static final int DEFAULT_POST_WINDOW = 250;
+
+    /*
+     * Prefix of the key for whether to keep a push channel open to a chat server.
+     */
+    private static final String PUSH_ENABLED_KEY_PREFIX = "push-enabled:";
+
+    /*
+     * Prefix of the key for whether to keep a chat socket open to a chat server.
+     */
+    private static final String SOCKET_ENABLED_KEY_PREFIX = "socket-enabled:";
+
+    /*
+     * SQLite configuration for the chat database (takes effect when the app is restarted).
+     */
+    private static final String DATABASE_PROFILE_KEY = "database-profile";
+
     private static SharedPreferences getPreferences(Context context) {
         // return context.getSharedPreferences(SETTINGS, Context.MODE_PRIVATE);
         return PreferenceManager.getDefaultSharedPreferences(context);
@@ -105,4 +154,110 @@ public class Settings {
         SharedPreferences prefs = getPreferences(context);
         return !defaultUserName.equals(prefs.getString(CHAT_NAME_KEY, defaultUserName));
     }
+
+    public static int getSyncBatchSize(Context context) {
+        SharedPreferences prefs = getPreferences(context);
+        return Math.max(1, prefs.getInt(SYNC_BATCH_SIZE_KEY, DEFAULT_SYNC_BATCH_SIZE));
+    }
+
+    public static void saveSyncBatchSize(Context context, int batchSize) {
+        SharedPreferences.Editor editor =  getPreferences(context).edit();
+        editor.putInt(SYNC_BATCH_SIZE_KEY, batchSize);
+        editor.apply();
+    }
+
+    public static int getSyncPageSize(Context context) {
+        SharedPreferences prefs = getPreferences(context);
+        return Math.max(1, prefs.getInt(SYNC_PAGE_SIZE_KEY, DEFAULT_SYNC_PAGE_SIZE));
+    }
+
+    /*
+     * Not every chat server accepts compressed request bodies, so this is tracked per server:
+     * uploads are compressed until the server rejects one (any client error, other than one
+     * asking us to retry later, or an internal error, since many servers ignore the encoding
+     * and fail to parse the body).
+     * Compressed responses are negotiated (and decompressed) transparently by the HTTP client.
+     */
+    public static boolean isGzipUpload(Context context, Uri serverUri) {
+        SharedPreferences prefs = getPreferences(context);
+        return prefs.getBoolean(GZIP_UPLOAD_KEY_PREFIX + serverUri, true);
+    }
+
+    public static void saveGzipUpload(Context context, Uri serverUri, boolean gzipUpload) {
+        SharedPreferences.Editor editor =  getPreferences(context).edit();
+        editor.putBoolean(GZIP_UPLOAD_KEY_PREFIX + serverUri, gzipUpload);
+        editor.apply();
+    }
+
+    /*
+     * Uploads use the format the server last responded with (null until the first sync).
+     */
+    public static String getSyncFormat(Context context, Uri serverUri) {
+        SharedPreferences prefs = getPreferences(context);
+        return prefs.getString(SYNC_FORMAT_KEY_PREFIX + serverUri, null);
+    }
+
+    public static void saveSyncFormat(Context context, Uri serverUri, String mediaType) {
+        SharedPreferences.Editor editor =  getPreferences(context).edit();
+        editor.putString(SYNC_FORMAT_KEY_PREFIX + serverUri, mediaType);
+        editor.apply();
+    }
+
+    public static int getPostWindow(Context context) {
+        SharedPreferences prefs = getPreferences(context);
+        return Math.max(0, prefs.getInt(POST_WINDOW_KEY, DEFAULT_POST_WINDOW));
+    }
+
+    /*
+     * Push is optional (the server may not support it), periodic sync is always the fallback.
+     * It is tried until the server responds that it has no event stream.
+     */
+    public static boolean isPushEnabled(Context context, Uri serverUri) {
+        SharedPreferences prefs = getPreferences(context);
+        return prefs.getBoolean(PUSH_ENABLED_KEY_PREFIX + serverUri, true);
+    }
+
+    public static void savePushEnabled(Context context, Uri serverUri, boolean pushEnabled) {
+        SharedPreferences.Editor editor =  getPreferences(context).edit();
+        editor.putBoolean(PUSH_ENABLED_KEY_PREFIX + serverUri, pushEnabled);
+        editor.apply();
+    }
+
+    /*
+     * The chat socket is optional (the server may not support it), REST is always the fallback.
+     * It is tried until the server responds that it has no socket endpoint.
+     */
+    public static boolean isSocketEnabled(Context context, Uri serverUri) {
+        SharedPreferences prefs = getPreferences(context);
+        return prefs.getBoolean(SOCKET_ENABLED_KEY_PREFIX + serverUri, true);
+    }
+
+    public static void saveSocketEnabled(Context context, Uri serverUri, boolean socketEnabled) {
+        SharedPreferences.Editor editor =  getPreferences(context).edit();
+        editor.putBoolean(SOCKET_ENABLED_KEY_PREFIX + serverUri, socketEnabled);
+        editor.apply();
+    }
+
+    /*
+     * Forget what we have learned about what a chat server supports, e.g. when we register
+     * with it again (it may have been upgraded).
+     */
+    public static void forgetServerCapabilities(Context context, Uri serverUri) {
+        SharedPreferences.Editor editor =  getPreferences(context).edit();
+        editor.remove(GZIP_UPLOAD_KEY_PREFIX + serverUri);
+        editor.remove(PUSH_ENABLED_KEY_PREFIX + serverUri);
+        editor.remove(SOCKET_ENABLED_KEY_PREFIX + serverUri);
+        editor.apply();
+    }
+
+    public static DatabaseProfile getDatabaseProfile(Context context) {
+        SharedPreferences prefs = getPreferences(context);
+        return DatabaseProfile.parse(prefs.getString(DATABASE_PROFILE_KEY, null));
+    }
+
+    public static void saveDatabaseProfile(Context context, DatabaseProfile profile) {
+        SharedPreferences.Editor editor =  getPreferences(context).edit();
+        editor.putString(DATABASE_PROFILE_KEY, profile.name());
+        editor.apply();
+    }
 }
@@ -0,0 +1,64 @@
+package edu.stevens.cs522.chat.ui;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.Objects;
+
+import edu.stevens.cs522.chat.R;
+import edu.stevens.cs522.chat.entities.Message;
+
+/**
+ * Displays pages of messages loaded on demand, rather than the entire list of messages.
+ */
+public abstract class MessagePagingAdapter extends PagingDataAdapter<Message, MessageAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<Message> DIFF_CALLBACK = new DiffUtil.ItemCallback<Message>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Message oldItem, @NonNull Message newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Message oldItem, @NonNull Message newItem) {
+            // A message only changes when the server assigns its sequence number.
+            return oldItem.seqNum == newItem.seqNum
+                    && Objects.equals(oldItem.sender, newItem.sender)
+                    && Objects.equals(oldItem.messageText, newItem.messageText);
+        }
+    };
+
+    public MessagePagingAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    @NonNull
+    @Override
+    public MessageAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
+        View view = LayoutInflater.from(viewGroup.getContext())
+                .inflate(R.layout.message, viewGroup, false);
+
+        return new MessageAdapter.ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull MessageAdapter.ViewHolder viewHolder, int position) {
+        // Null if placeholders are enabled and the page is not yet loaded.
+        Message message = getItem(position);
+        if (message != null) {
+            viewHolder.setMetadata(getHeading(message));
+            viewHolder.setMessage(message.messageText);
+        } else {
+            viewHolder.setMetadata("");
+            viewHolder.setMessage("");
+        }
+    }
+
+    public abstract String getHeading(Message message);
+
+}
@@ -0,0 +1,10 @@
+package edu.stevens.cs522.chat.ui;
+
+import edu.stevens.cs522.chat.entities.Message;
+
+public class MessageSenderPagingAdapter extends MessagePagingAdapter {
+    @Override
+    public String getHeading(Message message) {
+        return message.sender;
+    }
+}
@@ -6,10 +6,14 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
-
-import java.util.List;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
 import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.databases.MessagePagingSource;
 import edu.stevens.cs522.chat.entities.Chatroom;
 import edu.stevens.cs522.chat.entities.Message;
 
@@ -17,11 +21,21 @@ public class ChatViewModel extends AndroidViewModel {
 
     public static final String TAG = ChatViewModel.class.getCanonicalName();
 
+    /*
+     * Messages loaded per page, and how far from the end of the loaded messages
+     * the next page is fetched.  At most MAX_SIZE messages are kept in memory.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    private static final int PREFETCH_DISTANCE = 25;
+
+    private static final int MAX_SIZE = 200;
+
     private ChatDatabase chatDatabase;
 
     private Chatroom chatroom;
 
-    private LiveData<List<Message>> messages;
+    private LiveData<PagingData<Message>> messages;
 
     public ChatViewModel(Application context) {
         super(context);
@@ -29,7 +43,7 @@ public class ChatViewModel extends AndroidViewModel {
         chatDatabase = ChatDatabase.getInstance(context);
     }
 
-    public LiveData<List<Message>> fetchAllMessages(@NonNull Chatroom chatroom) {
+    public LiveData<PagingData<Message>> fetchMessages(@NonNull Chatroom chatroom) {
         if (this.chatroom == null || (!chatroom.name.equals(this.chatroom.name))) {
             this.chatroom = chatroom;
             this.messages = loadMessages(chatroom);
@@ -37,8 +51,13 @@ public class ChatViewModel extends AndroidViewModel {
         return messages;
     }
 
-    private LiveData<List<Message>> loadMessages(@NonNull  Chatroom chatroom) {
-        return chatDatabase.messageDao().fetchAllMessages(chatroom.name);
+    private LiveData<PagingData<Message>> loadMessages(@NonNull Chatroom chatroom) {
+        final ChatDatabase database = chatDatabase;
+        final String chatroomName = chatroom.name;
+        Pager<Long, Message> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE, PREFETCH_DISTANCE, false, 2 * PAGE_SIZE, MAX_SIZE),
+                () -> new MessagePagingSource(database, chatroomName));
+        return PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), ViewModelKt.getViewModelScope(this));
     }
 
     @Override
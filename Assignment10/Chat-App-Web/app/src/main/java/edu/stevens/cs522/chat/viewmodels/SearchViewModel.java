@@ -0,0 +1,77 @@
+package edu.stevens.cs522.chat.viewmodels;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.databases.MessageSearchPagingSource;
+import edu.stevens.cs522.chat.entities.Message;
+
+public class SearchViewModel extends AndroidViewModel {
+
+    public static final String TAG = SearchViewModel.class.getCanonicalName();
+
+    private static final int PAGE_SIZE = 30;
+
+    private ChatDatabase chatDatabase;
+
+    private MessageSearchPagingSource.Scope scope = MessageSearchPagingSource.Scope.ALL;
+
+    private String name;
+
+    private final MutableLiveData<String> query = new MutableLiveData<>();
+
+    private final LiveData<PagingData<Message>> results;
+
+    public SearchViewModel(Application context) {
+        super(context);
+        Log.i(TAG, "Getting database in SearchViewModel....");
+        chatDatabase = ChatDatabase.getInstance(context);
+        results = Transformations.switchMap(query, this::loadResults);
+    }
+
+    /*
+     * The chatroom or peer name to search within (null for ALL).
+     */
+    public void setScope(MessageSearchPagingSource.Scope scope, String name) {
+        this.scope = scope;
+        this.name = name;
+    }
+
+    public void search(String text) {
+        if (!text.equals(query.getValue())) {
+            query.setValue(text);
+        }
+    }
+
+    public LiveData<PagingData<Message>> getResults() {
+        return results;
+    }
+
+    private LiveData<PagingData<Message>> loadResults(String text) {
+        final ChatDatabase database = chatDatabase;
+        final MessageSearchPagingSource.Scope scope = this.scope;
+        final String name = this.name;
+        Pager<Integer, Message> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE),
+                () -> new MessageSearchPagingSource(database, text, scope, name));
+        return PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), ViewModelKt.getViewModelScope(this));
+    }
+
+    @Override
+    public void onCleared() {
+        super.onCleared();
+        Log.i(TAG, "Clearing SearchViewModel....");
+        chatDatabase = null;
+    }
+}
@@ -0,0 +1,132 @@
+package edu.stevens.cs522.chat;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.client.StreamingOutput;
+import edu.stevens.cs522.chat.rest.codec.SyncCodec;
+import edu.stevens.cs522.chat.rest.codec.SyncEncoder;
+
+/**
+ * Entities shared by the local unit tests (of the wire formats and the server protocol) and
+ * the instrumented tests and benchmarks (of the database).
+ */
+public class TestData {
+
+    public static final String CHATROOM = "_default";
+
+    // The app id of messages from other peers (the app under test has its own, random, app id)
+    public static final UUID APP_ID = UUID.fromString("0b6a4a50-3f5e-4c8e-9a57-6a1d2b5c7e90");
+
+    public static final long START_TIME = 1_600_000_000_000L;
+
+    public static String peerName(int i) {
+        return "peer-" + i;
+    }
+
+    public static List<Peer> peers(int count) {
+        List<Peer> peers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Peer peer = new Peer();
+            peer.id = i + 1;
+            peer.name = peerName(i);
+            peer.timestamp = new Date(START_TIME);
+            peer.latitude = 40.744906;
+            peer.longitude = -74.023937;
+            peers.add(peer);
+        }
+        return peers;
+    }
+
+    public static List<Chatroom> chatrooms(int count) {
+        List<Chatroom> chatrooms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Chatroom chatroom = new Chatroom(i == 0 ? CHATROOM : "chatroom-" + i);
+            chatroom.id = i + 1;
+            chatrooms.add(chatroom);
+        }
+        return chatrooms;
+    }
+
+    /*
+     * Messages downloaded from the server, round-robin from the given number of peers, with
+     * sequence numbers starting after firstSeqNum.  They are not stored yet, so they have no id.
+     */
+    public static List<Message> messages(String chatroom, int count, int peers, long firstSeqNum) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Message message = new Message();
+            message.chatroom = chatroom;
+            message.messageText = "Message number " + i + " about nothing in particular";
+            message.seqNum = firstSeqNum + i + 1;
+            message.appID = APP_ID;
+            message.timestamp = new Date(START_TIME + 1000L * i);
+            message.latitude = 40.744906;
+            message.longitude = -74.023937;
+            message.sender = peerName(i % peers);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    public static List<Message> messages(int count, int peers) {
+        return messages(CHATROOM, count, peers, 0);
+    }
+
+    public static Message message(long id, String text) {
+        Message message = new Message();
+        message.id = id;
+        message.chatroom = CHATROOM;
+        message.messageText = text;
+        message.appID = APP_ID;
+        message.timestamp = new Date(START_TIME);
+        message.latitude = 40.744906;
+        message.longitude = -74.023937;
+        message.sender = peerName(0);
+        return message;
+    }
+
+    /*
+     * A sync upload of new chatrooms and messages, in the given wire format.
+     */
+    public static StreamingOutput upload(final SyncCodec codec, final List<Chatroom> chatrooms, final List<Message> messages) {
+        return os -> {
+            try (SyncEncoder encoder = codec.newEncoder(os)) {
+                encoder.beginChatrooms();
+                for (Chatroom chatroom : chatrooms) {
+                    encoder.writeChatroom(chatroom);
+                }
+                encoder.endChatrooms();
+                encoder.beginMessages();
+                for (Message message : messages) {
+                    encoder.writeMessage(message);
+                }
+                encoder.endMessages();
+            }
+        };
+    }
+
+    /*
+     * Add the peers and chatroom that messages refer to.
+     */
+    public static void setUp(ChatDatabase chatDatabase, int peers) {
+        chatDatabase.peerDao().upsert(peers(peers));
+        chatDatabase.chatroomDao().insert(new Chatroom(CHATROOM));
+    }
+
+    public static int count(ChatDatabase chatDatabase, String table) {
+        try (Cursor cursor = chatDatabase.query("SELECT COUNT(*) FROM " + table, null)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package edu.stevens.cs522.chat.rest;
+
+import com.google.gson.Gson;
+
+import java.util.Collections;
+import java.util.Date;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.rest.client.HeaderInterceptor;
+import edu.stevens.cs522.chat.rest.client.ServerApi;
+import edu.stevens.cs522.chat.rest.request.PostMessageRequest;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Message posts shared by the connection test and the latency benchmark of the shared HTTP
+ * client: the request for a post, and a new client and API stub for a single request, as
+ * RestMethod used to create for every request.
+ */
+public class MessagePosts {
+
+    public static PostMessageRequest newRequest(int i) {
+        Message message = TestData.message(i + 1, "Message number " + i);
+        PostMessageRequest request = new PostMessageRequest(message);
+        request.appID = TestData.APP_ID;
+        request.timestamp = new Date();
+        request.latitude = message.latitude;
+        request.longitude = message.longitude;
+        return request;
+    }
+
+    public static ServerApi newServerApi(HttpUrl baseUrl, Gson gson) {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new HeaderInterceptor(Collections.<String,String>emptyMap()))
+                .build();
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .client(client)
+                .build()
+                .create(ServerApi.class);
+    }
+
+}
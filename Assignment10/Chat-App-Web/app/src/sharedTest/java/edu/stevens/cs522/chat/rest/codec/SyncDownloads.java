@@ -0,0 +1,113 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.RestMethod;
+
+/**
+ * Synchronization downloads in either wire format, as the server would write them, shared by
+ * the codec tests and the codec benchmark.
+ *
+ * The encoders only write the upload (chatrooms and messages), while the decoders read the
+ * download, which starts with the peers.  The JSON download is the peers array followed by the
+ * members of the upload object, and the binary download is written by the binary codec itself.
+ */
+public class SyncDownloads {
+
+    /*
+     * The large download whose payload sizes are compared by the test and the benchmark.
+     */
+    public static final int PEERS = 50;
+
+    public static final int CHATROOMS = 3;
+
+    public static final int MESSAGES = 5000;
+
+    public static class Decoded {
+        public final List<Peer> peers = new ArrayList<>();
+        public final List<Chatroom> chatrooms = new ArrayList<>();
+        public final List<Message> messages = new ArrayList<>();
+    }
+
+    public static byte[] upload(SyncCodec codec, List<Chatroom> chatrooms, List<Message> messages) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        TestData.upload(codec, chatrooms, messages).write(os);
+        return os.toByteArray();
+    }
+
+    /*
+     * JSON: the upload object, with the peers array as its first member.
+     */
+    private static byte[] jsonDownload(Gson gson, List<Peer> peers, List<Chatroom> chatrooms, List<Message> messages) throws IOException {
+        byte[] upload = upload(new JsonSyncCodec(gson), chatrooms, messages);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        os.write(("{\"" + RestMethod.PEERS + "\":" + gson.toJson(peers)).getBytes(StandardCharsets.UTF_8));
+        // Skip the opening brace of the upload object
+        os.write(',');
+        os.write(upload, 1, upload.length - 1);
+        return os.toByteArray();
+    }
+
+    private static byte[] binaryDownload(BinarySyncCodec codec, List<Peer> peers, List<Chatroom> chatrooms, List<Message> messages) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (BinarySyncCodec.Encoder encoder = codec.newDownloadEncoder(os)) {
+            for (Peer peer : peers) {
+                encoder.writePeer(peer);
+            }
+            encoder.endPeers();
+            encoder.beginChatrooms();
+            for (Chatroom chatroom : chatrooms) {
+                encoder.writeChatroom(chatroom);
+            }
+            encoder.endChatrooms();
+            encoder.beginMessages();
+            for (Message message : messages) {
+                encoder.writeMessage(message);
+            }
+            encoder.endMessages();
+        }
+        return os.toByteArray();
+    }
+
+    public static byte[] download(SyncCodec codec, Gson gson, List<Peer> peers, List<Chatroom> chatrooms, List<Message> messages) throws IOException {
+        if (codec instanceof BinarySyncCodec) {
+            return binaryDownload((BinarySyncCodec) codec, peers, chatrooms, messages);
+        } else {
+            return jsonDownload(gson, peers, chatrooms, messages);
+        }
+    }
+
+    /*
+     * Read every section of a download.
+     */
+    public static Decoded decode(SyncCodec codec, byte[] bytes) throws IOException {
+        Decoded decoded = new Decoded();
+        try (SyncDecoder decoder = codec.newDecoder(new ByteArrayInputStream(bytes))) {
+            Peer peer;
+            while ((peer = decoder.readPeer()) != null) {
+                decoded.peers.add(peer);
+            }
+            Chatroom chatroom;
+            while ((chatroom = decoder.readChatroom()) != null) {
+                decoded.chatrooms.add(chatroom);
+            }
+            Message message;
+            while ((message = decoder.readMessage()) != null) {
+                decoded.messages.add(message);
+            }
+        }
+        return decoded;
+    }
+
+}
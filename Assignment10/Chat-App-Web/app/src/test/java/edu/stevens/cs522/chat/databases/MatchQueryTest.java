@@ -0,0 +1,57 @@
+package edu.stevens.cs522.chat.databases;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Text entered by the user becomes an FTS match expression of word prefixes, all of which must
+ * match, whatever punctuation, quotes or query operators it contains.
+ */
+public class MatchQueryTest {
+
+    private static String match(String text) {
+        return MessageSearchPagingSource.toMatchQuery(text);
+    }
+
+    @Test
+    public void wordsBecomePrefixes() {
+        assertEquals("hello* world*", match("Hello World"));
+        assertEquals("grüße* 你好*", match("  Grüße,   你好 "));
+        assertEquals("route* 66*", match("route 66"));
+    }
+
+    @Test
+    public void punctuationDropped() {
+        assertEquals("don* t* stop*", match("don't stop!"));
+        assertEquals("a* b* c*", match("a.b-c"));
+        assertEquals("x*", match("x*"));
+        assertEquals("col* val*", match("col:val"));
+        assertEquals("not* this*", match("-not (this)"));
+    }
+
+    @Test
+    public void quotesDropped() {
+        assertEquals("exact* phrase*", match("\"exact phrase\""));
+        assertEquals("unbalanced*", match("\"unbalanced"));
+    }
+
+    @Test
+    public void operatorsAreWords() {
+        // FTS operators are upper case, so lower-cased they are ordinary terms
+        assertEquals("cats* or* dogs*", match("cats OR dogs"));
+        assertEquals("cats* near* dogs*", match("cats NEAR dogs"));
+        assertEquals("cats* near* 3* dogs*", match("cats NEAR/3 dogs"));
+        assertEquals("and*", match("AND"));
+    }
+
+    @Test
+    public void nothingToSearchFor() {
+        assertNull(match(null));
+        assertNull(match(""));
+        assertNull(match("   "));
+        assertNull(match("\"*-().,!"));
+    }
+
+}
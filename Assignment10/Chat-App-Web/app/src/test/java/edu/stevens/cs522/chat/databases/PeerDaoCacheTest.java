@@ -0,0 +1,226 @@
+package edu.stevens.cs522.chat.databases;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Peer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The peer cache in PeerDao, over an in-memory stand-in for the peer table that counts the
+ * queries and writes that reach it.
+ */
+public class PeerDaoCacheTest {
+
+    // As PeerDao
+    private static final int MAX_CACHED_PEERS = 500;
+
+    private static final long MINUTE = 60 * 1000;
+
+    private static class FakePeerDao extends PeerDao {
+
+        final Map<String, Peer> table = new HashMap<>();
+
+        long nextId = 1;
+
+        int lookups, inserts, updates;
+
+        @Override
+        public LiveData<List<Peer>> fetchAllPeers() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<Peer> fetchPeer(long peerId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected long getPeerId(String name) {
+            lookups++;
+            Peer row = table.get(name);
+            return row == null ? 0 : row.id;
+        }
+
+        @Override
+        public long insert(Peer peer) {
+            inserts++;
+            if (table.containsKey(peer.name)) {
+                return -1;
+            }
+            Peer row = copy(peer);
+            row.id = nextId++;
+            table.put(peer.name, row);
+            return row.id;
+        }
+
+        @Override
+        protected int update(Peer peer) {
+            updates++;
+            Peer row = table.get(peer.name);
+            if (row == null || row.id != peer.id) {
+                return 0;
+            }
+            table.put(peer.name, copy(peer));
+            return 1;
+        }
+
+        /*
+         * As if the transaction that inserted the peer had been rolled back.
+         */
+        void rollback(String name) {
+            table.remove(name);
+        }
+    }
+
+    private static Peer copy(Peer peer) {
+        Peer copy = new Peer();
+        copy.id = peer.id;
+        copy.name = peer.name;
+        copy.timestamp = peer.timestamp;
+        copy.latitude = peer.latitude;
+        copy.longitude = peer.longitude;
+        return copy;
+    }
+
+    private static Peer peer(int i, long time, double latitude) {
+        Peer peer = new Peer();
+        peer.name = TestData.peerName(i);
+        peer.timestamp = new Date(time);
+        peer.latitude = latitude;
+        peer.longitude = -74.023937;
+        return peer;
+    }
+
+    private static Peer peer(int i) {
+        return peer(i, TestData.START_TIME, 40.744906);
+    }
+
+    private final FakePeerDao dao = new FakePeerDao();
+
+    @Test
+    public void knownPeerIsNotLookedUp() {
+        long id = dao.upsert(peer(0));
+        assertEquals(1, dao.lookups);
+        assertEquals(1, dao.inserts);
+
+        Peer again = peer(0);
+        assertEquals(id, dao.upsert(again));
+        assertEquals(id, again.id);
+        assertEquals(1, dao.lookups);
+        assertEquals(1, dao.inserts);
+        assertEquals(0, dao.updates);
+    }
+
+    @Test
+    public void smallChangesAreNotWritten() {
+        dao.upsert(peer(0));
+
+        // Just under both thresholds
+        dao.upsert(peer(0, TestData.START_TIME + MINUTE - 1, 40.744906 + 0.9e-4));
+        assertEquals(0, dao.updates);
+        assertTrue(dao.getCacheStats(), dao.getCacheStats().contains("skipped updates=1"));
+
+        // The comparison is with what was last written, so small changes do not add up unseen
+        dao.upsert(peer(0, TestData.START_TIME + MINUTE, 40.744906));
+        assertEquals(1, dao.updates);
+        assertEquals(TestData.START_TIME + MINUTE, dao.table.get(TestData.peerName(0)).timestamp.getTime());
+
+        dao.upsert(peer(0, TestData.START_TIME + MINUTE, 40.744906 + 2e-4));
+        assertEquals(2, dao.updates);
+        assertEquals(1, dao.lookups);
+    }
+
+    @Test
+    public void unknownLocationIsWritten() {
+        dao.upsert(peer(0));
+        Peer peer = peer(0);
+        peer.latitude = null;
+        dao.upsert(peer);
+        assertEquals(1, dao.updates);
+        assertNull(dao.table.get(TestData.peerName(0)).latitude);
+    }
+
+    @Test
+    public void leastRecentlyUsedPeerIsEvicted() {
+        for (int i = 0; i < MAX_CACHED_PEERS; i++) {
+            dao.upsert(peer(i));
+        }
+        // Use the first peer again, so the second is now the eldest
+        dao.upsert(peer(0));
+        assertEquals(MAX_CACHED_PEERS, dao.lookups);
+
+        dao.upsert(peer(MAX_CACHED_PEERS));
+        assertTrue(dao.getCacheStats(), dao.getCacheStats().contains("size=" + MAX_CACHED_PEERS + " "));
+
+        dao.upsert(peer(0));
+        assertEquals(MAX_CACHED_PEERS + 1, dao.lookups);
+
+        // The evicted peer is looked up, and keeps its primary key
+        Peer evicted = peer(1);
+        dao.upsert(evicted);
+        assertEquals(MAX_CACHED_PEERS + 2, dao.lookups);
+        assertEquals(dao.table.get(TestData.peerName(1)).id, evicted.id);
+        assertEquals(MAX_CACHED_PEERS + 1, dao.inserts);
+    }
+
+    @Test
+    public void invalidatedPeerIsLookedUp() {
+        dao.upsert(peer(0));
+        dao.upsert(peer(1));
+
+        dao.invalidateCache(TestData.peerName(0));
+        dao.upsert(peer(0));
+        dao.upsert(peer(1));
+        assertEquals(3, dao.lookups);
+
+        dao.invalidateCache();
+        dao.upsert(peer(0));
+        dao.upsert(peer(1));
+        assertEquals(5, dao.lookups);
+        assertEquals(2, dao.inserts);
+    }
+
+    @Test
+    public void rolledBackPeerIsInsertedAgain() {
+        long id = dao.upsert(peer(0));
+        dao.rollback(TestData.peerName(0));
+        dao.invalidateCache(TestData.peerName(0));
+
+        long again = dao.upsert(peer(0));
+        assertTrue(again != id);
+        assertEquals(again, dao.table.get(TestData.peerName(0)).id);
+        assertEquals(2, dao.inserts);
+    }
+
+    @Test
+    public void failedUpdateFallsBackToInsert() {
+        long id = dao.upsert(peer(0));
+        // Not invalidated, but the change is large enough to write, which finds the row gone
+        dao.rollback(TestData.peerName(0));
+
+        Peer moved = peer(0, TestData.START_TIME + MINUTE, 40.744906);
+        long again = dao.upsert(moved);
+        assertTrue(again != id);
+        assertEquals(again, moved.id);
+        assertEquals(again, dao.table.get(TestData.peerName(0)).id);
+        assertEquals(2, dao.lookups);
+
+        // And the new row is cached
+        dao.upsert(peer(0, TestData.START_TIME + MINUTE, 40.744906));
+        assertEquals(2, dao.lookups);
+    }
+
+}
@@ -0,0 +1,100 @@
+package edu.stevens.cs522.chat.rest;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.rest.client.ServerApi;
+import edu.stevens.cs522.chat.rest.request.ChatServiceRequest;
+import edu.stevens.cs522.chat.rest.request.PostMessageRequest;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Back-to-back message posts, with a new HTTP client and API stub for each request (as
+ * RestMethod used to do) and with one client and stub shared by all requests (as it does now):
+ * only the shared client reuses its connection, which against a real server also saves a TLS
+ * handshake per post.
+ */
+public class PostConnectionTest {
+
+    private static final int POSTS = 50;
+
+    private MockWebServer server;
+
+    private Gson gson;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        for (int i = 0; i < 2 * POSTS; i++) {
+            server.enqueue(new MockResponse().setResponseCode(201));
+        }
+        gson = new RestMethod(null).getGson();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    private ServerApi newServerApi() {
+        return MessagePosts.newServerApi(server.url("/"), gson);
+    }
+
+    private static void post(ServerApi serverApi, PostMessageRequest request) throws IOException {
+        Response<Void> response = serverApi.postMessage(request.message.sender, request.message, request).execute();
+        assertTrue(response.isSuccessful());
+    }
+
+    private void postAll(boolean shared) throws IOException {
+        ServerApi sharedApi = newServerApi();
+        for (int i = 0; i < POSTS; i++) {
+            post(shared ? sharedApi : newServerApi(), MessagePosts.newRequest(i));
+        }
+    }
+
+    private List<RecordedRequest> takeRequests(int count) throws InterruptedException {
+        RecordedRequest[] requests = new RecordedRequest[count];
+        for (int i = 0; i < count; i++) {
+            requests[i] = server.takeRequest();
+        }
+        return Arrays.asList(requests);
+    }
+
+    @Test
+    public void backToBackPosts() throws Exception {
+        postAll(false);
+        List<RecordedRequest> perRequestPosts = takeRequests(POSTS);
+        postAll(true);
+        List<RecordedRequest> sharedPosts = takeRequests(POSTS);
+
+        // A new client means a new connection for every post...
+        for (RecordedRequest request : perRequestPosts) {
+            assertEquals(0, request.getSequenceNumber());
+        }
+        // ...while the shared client keeps one connection alive for all of them.
+        for (int i = 0; i < sharedPosts.size(); i++) {
+            assertEquals(i, sharedPosts.get(i).getSequenceNumber());
+        }
+
+        // The per-request headers still come from the request attached to each call.
+        RecordedRequest last = sharedPosts.get(sharedPosts.size() - 1);
+        assertEquals(TestData.APP_ID.toString(), last.getHeader(ChatServiceRequest.APP_ID_HEADER));
+        assertTrue(last.getPath().endsWith("/messages"));
+    }
+
+}
@@ -0,0 +1,182 @@
+package edu.stevens.cs522.chat.rest;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.rest.client.SocketFrame;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The chat socket protocol, against a local stand-in for the chat server: a posted message
+ * is acknowledged with its sequence number (keyed by the local primary key), and messages
+ * from other peers are pushed to us, all as JSON frames encoded with the app's Gson.
+ */
+public class SocketProtocolTest {
+
+    private static final long TIMEOUT = 5;
+
+    private static final long FIRST_SEQ_NUM = 100;
+
+    private MockWebServer server;
+
+    private Gson gson;
+
+    private OkHttpClient client;
+
+    // Frames received by the client and by the server
+    private final BlockingQueue<SocketFrame> received = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<SocketFrame> posted = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<Integer> closed = new LinkedBlockingQueue<>();
+
+    /*
+     * The server assigns sequence numbers to posted messages, acknowledges each one, and
+     * relays it to the other peers (here, back to us as another peer's message).
+     */
+    private class ServerListener extends WebSocketListener {
+
+        private long seqNum = FIRST_SEQ_NUM;
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            SocketFrame frame = gson.fromJson(text, SocketFrame.class);
+            posted.add(frame);
+            if (SocketFrame.POST.equals(frame.type)) {
+                SocketFrame ack = new SocketFrame();
+                ack.type = SocketFrame.ACK;
+                ack.id = frame.id;
+                ack.seqNum = seqNum;
+                webSocket.send(gson.toJson(ack));
+
+                Message relayed = frame.message;
+                relayed.seqNum = seqNum;
+                relayed.sender = TestData.peerName(1);
+                webSocket.send(gson.toJson(new SocketFrame(SocketFrame.MESSAGE, relayed)));
+                seqNum++;
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+        }
+    }
+
+    private class ClientListener extends WebSocketListener {
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            received.add(gson.fromJson(text, SocketFrame.class));
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            closed.add(code);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            closed.add(-1);
+        }
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = new MockWebServer();
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new ServerListener()));
+        server.start();
+        gson = new RestMethod(null).getGson();
+        client = new OkHttpClient();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        client.dispatcher().executorService().shutdown();
+        server.shutdown();
+    }
+
+    private WebSocket connect() {
+        // As RestMethod.openWebSocket: OkHttp upgrades the http(s) URL.
+        Request request = new Request.Builder().url(server.url("/chat/" + TestData.peerName(0) + "/socket")).build();
+        return client.newWebSocket(request, new ClientListener());
+    }
+
+    private SocketFrame take(BlockingQueue<SocketFrame> frames) throws InterruptedException {
+        SocketFrame frame = frames.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull("Timed out waiting for a frame", frame);
+        return frame;
+    }
+
+    @Test
+    public void sendAckReceive() throws Exception {
+        WebSocket webSocket = connect();
+
+        RecordedRequest upgrade = server.takeRequest();
+        assertEquals("/chat/peer-0/socket", upgrade.getPath());
+
+        Message first = TestData.message(7, "Hello over the socket");
+        Message second = TestData.message(8, "And again");
+        assertTrue(webSocket.send(gson.toJson(new SocketFrame(SocketFrame.POST, first))));
+        assertTrue(webSocket.send(gson.toJson(new SocketFrame(SocketFrame.POST, second))));
+
+        // The server sees the posts in order, keyed by our primary key.
+        SocketFrame post = take(posted);
+        assertEquals(SocketFrame.POST, post.type);
+        assertEquals(first.id, post.id);
+        assertEquals(first.messageText, post.message.messageText);
+        assertEquals(first.appID, post.message.appID);
+        assertEquals(first.timestamp, post.message.timestamp);
+        assertEquals(second.id, take(posted).id);
+
+        // Each post is acknowledged with its sequence number, and relayed to the other peers.
+        long seqNum = FIRST_SEQ_NUM;
+        for (Message message : new Message[] { first, second }) {
+            SocketFrame ack = take(received);
+            assertEquals(SocketFrame.ACK, ack.type);
+            assertEquals(message.id, ack.id);
+            assertEquals(seqNum, ack.seqNum);
+
+            SocketFrame relayed = take(received);
+            assertEquals(SocketFrame.MESSAGE, relayed.type);
+            assertEquals(seqNum, relayed.message.seqNum);
+            assertEquals(message.messageText, relayed.message.messageText);
+            assertEquals(message.chatroom, relayed.message.chatroom);
+            assertEquals(TestData.peerName(1), relayed.message.sender);
+            seqNum++;
+        }
+
+        assertTrue(webSocket.close(1000, null));
+        assertEquals(Integer.valueOf(1000), closed.poll(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void unknownFramesAreParsed() throws Exception {
+        // ChatSocket ignores frames with a type it does not know, so they must still parse.
+        SocketFrame frame = gson.fromJson("{\"type\":\"typing\",\"id\":3,\"extra\":true}", SocketFrame.class);
+        assertEquals("typing", frame.type);
+        assertEquals(3, frame.id);
+    }
+
+}
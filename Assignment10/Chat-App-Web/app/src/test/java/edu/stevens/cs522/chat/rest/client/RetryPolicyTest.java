@@ -0,0 +1,98 @@
+package edu.stevens.cs522.chat.rest.client;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import edu.stevens.cs522.chat.rest.request.ChatServiceRequest.RequestType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Which failures are retried for each type of request, and how they count for the circuit breaker.
+ */
+public class RetryPolicyTest {
+
+    private static final RetryPolicy REGISTER = RetryPolicy.forRequestType(RequestType.REGISTER);
+
+    private static final RetryPolicy SYNC = RetryPolicy.forRequestType(RequestType.SYNCHRONIZE);
+
+    private static final RetryPolicy POST = RetryPolicy.forRequestType(RequestType.POST_MESSAGES);
+
+    @Test
+    public void idempotentRequestsRetryGatewayErrors() {
+        for (int code : new int[] { 429, 502, 503, 504 }) {
+            assertTrue(REGISTER.isRetryable(code));
+        }
+        assertFalse(REGISTER.isRetryable(500));
+        assertFalse(REGISTER.isRetryable(404));
+        assertTrue(REGISTER.isRetryable(new SocketTimeoutException("Read timed out")));
+        assertTrue(REGISTER.isRetryable(new IOException("Connection reset")));
+    }
+
+    @Test
+    public void postsOnlyRetryWhenNotProcessed() {
+        assertTrue(POST.isRetryable(429));
+        assertTrue(POST.isRetryable(503));
+        // The server behind the gateway may already have the message.
+        assertFalse(POST.isRetryable(502));
+        assertFalse(POST.isRetryable(504));
+        assertFalse(POST.isRetryable(500));
+
+        assertTrue(POST.isRetryable(new ConnectException("Connection refused")));
+        assertFalse(POST.isRetryable(new SocketTimeoutException("Read timed out")));
+    }
+
+    @Test
+    public void syncOnlyRetriesWhenNotProcessed() {
+        // A sync uploads the unsent messages, which the server may already have stored.
+        assertTrue(SYNC.isRetryable(429));
+        assertTrue(SYNC.isRetryable(503));
+        assertFalse(SYNC.isRetryable(502));
+        assertFalse(SYNC.isRetryable(504));
+
+        assertTrue(SYNC.isRetryable(new ConnectException("Connection refused")));
+        assertFalse(SYNC.isRetryable(new SocketTimeoutException("Read timed out")));
+        assertFalse(SYNC.isRetryable(new IOException("Connection reset")));
+    }
+
+    @Test
+    public void serverErrorsAreFailures() {
+        assertTrue(RetryPolicy.isServerFailure(500));
+        assertTrue(RetryPolicy.isServerFailure(503));
+        assertTrue(RetryPolicy.isServerFailure(429));
+        assertFalse(RetryPolicy.isServerFailure(200));
+        assertFalse(RetryPolicy.isServerFailure(404));
+    }
+
+    @Test
+    public void breakerOpensAtThreshold() {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("http://threshold.example/");
+        for (int i = 1; i < 5; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.recordFailure();
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        }
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsFailures() {
+        CircuitBreaker breaker = CircuitBreaker.getInstance("http://reset.example/");
+        for (int i = 1; i < 5; i++) {
+            breaker.recordFailure();
+        }
+        breaker.recordSuccess();
+        assertEquals(0, breaker.getFailures());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+}
@@ -0,0 +1,237 @@
+package edu.stevens.cs522.chat.rest.codec;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import edu.stevens.cs522.chat.TestData;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+import edu.stevens.cs522.chat.rest.RestMethod;
+import edu.stevens.cs522.chat.rest.codec.SyncDownloads.Decoded;
+
+import static edu.stevens.cs522.chat.rest.codec.SyncDownloads.CHATROOMS;
+import static edu.stevens.cs522.chat.rest.codec.SyncDownloads.MESSAGES;
+import static edu.stevens.cs522.chat.rest.codec.SyncDownloads.PEERS;
+import static edu.stevens.cs522.chat.rest.codec.SyncDownloads.decode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips through both synchronization wire formats, and a comparison of their payload sizes
+ * (their encode and decode times are compared by SyncCodecBenchmark).  The downloads are written
+ * as the server would by SyncDownloads.
+ */
+public class SyncCodecTest {
+
+    private final Gson gson = new RestMethod(null).getGson();
+
+    private final SyncCodec json = new JsonSyncCodec(gson);
+
+    private final SyncCodec binary = new BinarySyncCodec();
+
+    private byte[] download(SyncCodec codec, List<Peer> peers, List<Chatroom> chatrooms, List<Message> messages) throws IOException {
+        return SyncDownloads.download(codec, gson, peers, chatrooms, messages);
+    }
+
+    private static void assertPeer(Peer expected, Peer actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.latitude, actual.latitude);
+        assertEquals(expected.longitude, actual.longitude);
+    }
+
+    private static void assertMessage(Message expected, Message actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.chatroom, actual.chatroom);
+        assertEquals(expected.messageText, actual.messageText);
+        assertEquals(expected.seqNum, actual.seqNum);
+        assertEquals(expected.appID, actual.appID);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.latitude, actual.latitude);
+        assertEquals(expected.longitude, actual.longitude);
+        assertEquals(expected.sender, actual.sender);
+    }
+
+    private void roundTrip(SyncCodec codec) throws IOException {
+        List<Peer> peers = TestData.peers(PEERS);
+        List<Chatroom> chatrooms = TestData.chatrooms(CHATROOMS);
+        List<Message> messages = TestData.messages(MESSAGES, PEERS);
+        // Null fields and text that is not ASCII must survive too
+        Message message = TestData.message(MESSAGES + 1, "Grüße, 你好 😀 \"quoted\"\n");
+        message.latitude = null;
+        message.longitude = null;
+        messages.add(message);
+
+        Decoded decoded = decode(codec, download(codec, peers, chatrooms, messages));
+
+        assertEquals(peers.size(), decoded.peers.size());
+        for (int i = 0; i < peers.size(); i++) {
+            assertPeer(peers.get(i), decoded.peers.get(i));
+        }
+        assertEquals(chatrooms.size(), decoded.chatrooms.size());
+        for (int i = 0; i < chatrooms.size(); i++) {
+            assertEquals(chatrooms.get(i).name, decoded.chatrooms.get(i).name);
+        }
+        assertEquals(messages.size(), decoded.messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertMessage(messages.get(i), decoded.messages.get(i));
+        }
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        roundTrip(json);
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        roundTrip(binary);
+    }
+
+    @Test
+    public void emptyDownload() throws IOException {
+        for (SyncCodec codec : new SyncCodec[] { json, binary }) {
+            Decoded decoded = decode(codec, download(codec, TestData.peers(0), TestData.chatrooms(0), TestData.messages(0, 1)));
+            assertTrue(decoded.peers.isEmpty());
+            assertTrue(decoded.chatrooms.isEmpty());
+            assertTrue(decoded.messages.isEmpty());
+        }
+    }
+
+    @Test
+    public void malformedDownload() {
+        byte[] garbage = "<html>Bad Gateway</html>".getBytes(StandardCharsets.UTF_8);
+        for (SyncCodec codec : new SyncCodec[] { json, binary }) {
+            try {
+                decode(codec, garbage);
+                fail("Expected an IOException from " + codec.getMediaType());
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    /*
+     * A binary download with the stream header and a single peer record, of this length if the
+     * lengths written in it are correct.
+     */
+    private static final int RECORD_LENGTH = 19;
+
+    private static byte[] binaryPeerRecord(int recordLength, int nameLength) throws IOException {
+        byte[] header = SyncDownloads.upload(new BinarySyncCodec(), TestData.chatrooms(0), TestData.messages(0, 1));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        os.write(header, 0, 5);
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(recordLength);
+        out.writeLong(1);
+        out.writeInt(nameLength);
+        out.write("peer".getBytes(StandardCharsets.UTF_8));
+        // No timestamp or location
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        out.flush();
+        return os.toByteArray();
+    }
+
+    private void assertInvalidPeer(byte[] bytes) {
+        try (SyncDecoder decoder = binary.newDecoder(new ByteArrayInputStream(bytes))) {
+            decoder.readPeer();
+            fail("Expected an IOException for an invalid length");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void invalidBinaryLengths() throws IOException {
+        // A well-formed record, to check the others only differ in their lengths
+        try (SyncDecoder decoder = binary.newDecoder(new ByteArrayInputStream(binaryPeerRecord(RECORD_LENGTH, 4)))) {
+            assertEquals("peer", decoder.readPeer().name);
+        }
+        // A record length too large to allocate
+        assertInvalidPeer(binaryPeerRecord(Integer.MAX_VALUE, 4));
+        // A record length past the end of the stream
+        assertInvalidPeer(binaryPeerRecord(1000, 4));
+        // A string length past the end of the record
+        assertInvalidPeer(binaryPeerRecord(RECORD_LENGTH, Integer.MAX_VALUE));
+        assertInvalidPeer(binaryPeerRecord(RECORD_LENGTH, 8));
+    }
+
+    @Test
+    public void sectionsOutOfOrder() throws IOException {
+        for (SyncCodec codec : new SyncCodec[] { json, binary }) {
+            byte[] bytes = download(codec, TestData.peers(1), TestData.chatrooms(1), TestData.messages(1, 1));
+            try (SyncDecoder decoder = codec.newDecoder(new ByteArrayInputStream(bytes))) {
+                decoder.readMessage();
+                fail("Expected sections to be read in order by " + codec.getMediaType());
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void sectionsStayFinished() throws IOException {
+        for (SyncCodec codec : new SyncCodec[] { json, binary }) {
+            byte[] bytes = download(codec, TestData.peers(1), TestData.chatrooms(1), TestData.messages(1, 1));
+            try (SyncDecoder decoder = codec.newDecoder(new ByteArrayInputStream(bytes))) {
+                assertNotNull(decoder.readPeer());
+                assertNull(decoder.readPeer());
+                assertNotNull(decoder.readChatroom());
+                assertNull(decoder.readChatroom());
+                assertNotNull(decoder.readMessage());
+                assertNull(decoder.readMessage());
+                assertNull(decoder.readPeer());
+                assertNull(decoder.readMessage());
+            }
+        }
+    }
+
+    /*
+     * A field the type adapters cannot parse is malformed input, not a crash of the sync worker.
+     */
+    @Test
+    public void malformedJsonField() throws IOException {
+        Message message = TestData.message(1, "hello");
+        String appID = message.appID.toString();
+        String bytes = new String(download(json, TestData.peers(1), TestData.chatrooms(1), Collections.singletonList(message)),
+                StandardCharsets.UTF_8);
+        assertTrue(bytes.contains(appID));
+        try {
+            decode(json, bytes.replace(appID, "not-a-uuid").getBytes(StandardCharsets.UTF_8));
+            fail("Expected an IOException for an invalid UUID");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /*
+     * The binary format is the smaller of the two, for a large download.
+     */
+    @Test
+    public void payloadSize() throws IOException {
+        List<Peer> peers = TestData.peers(PEERS);
+        List<Chatroom> chatrooms = TestData.chatrooms(CHATROOMS);
+        List<Message> messages = TestData.messages(MESSAGES, PEERS);
+
+        int jsonSize = download(json, peers, chatrooms, messages).length;
+        int binarySize = download(binary, peers, chatrooms, messages).length;
+        assertTrue("Binary payload should be smaller than JSON", binarySize < jsonSize);
+    }
+
+}
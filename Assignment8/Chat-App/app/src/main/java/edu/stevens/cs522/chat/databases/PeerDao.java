@@ -8,7 +8,11 @@ import androidx.room.Query;
 import androidx.room.Transaction;
 import androidx.room.Update;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.stevens.cs522.chat.entities.Peer;
 
@@ -20,6 +24,31 @@ import edu.stevens.cs522.chat.entities.Peer;
 @Dao
 public abstract class PeerDao {
 
+    /*
+     * Cache of the peers last upserted, by name (least recently used are evicted), so a
+     * message from a known peer needs no lookup.  Invalidate it if an upsert is rolled back.
+     */
+    private static final int MAX_CACHED_PEERS = 500;
+
+    // Don't update last seen for a peer if it has changed by less than this (milliseconds)
+    private static final long TIMESTAMP_THRESHOLD = 60 * 1000;
+
+    // Don't update location for a peer if it has moved less than this (degrees, about 10m)
+    private static final double LOCATION_THRESHOLD = 1e-4;
+
+    private final Map<String, Peer> cache = new LinkedHashMap<String, Peer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Peer> eldest) {
+            return size() > MAX_CACHED_PEERS;
+        }
+    };
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private final AtomicLong skippedUpdates = new AtomicLong();
+
     /**
      * Get all peers in the database.
      * @return
@@ -46,9 +75,10 @@ public abstract class PeerDao {
     /**
      * Update the metadata for a peer (GPS coordinates, last seen)
      * @param peer
+     * @return number of rows updated
      */
     @Update
-    protected abstract void update(Peer peer);
+    protected abstract int update(Peer peer);
 
     @Transaction
     /**
@@ -57,15 +87,107 @@ public abstract class PeerDao {
      * This operation must be transactional, to avoid race condition
      * between search and insert
      */
-
     public void upsert(Peer peer) {
-        // TODO
+        Peer cached = getCached(peer.name);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            peer.id = cached.id;
+            if (!isChanged(cached, peer)) {
+                skippedUpdates.incrementAndGet();
+                return;
+            }
+            if (update(peer) > 0) {
+                putCached(peer);
+                return;
+            }
+            // The peer is no longer in the database (e.g. the insert was rolled back)
+            invalidateCache(peer.name);
+        } else {
+            cacheMisses.incrementAndGet();
+        }
+
         long id = getPeerId(peer.name);
-        if(id == 0) {
-            insert(peer);
+        if (id == 0) {
+            peer.id = 0;
+            id = insert(peer);
         } else {
+            peer.id = id;
             update(peer);
         }
+        if (id > 0) {
+            peer.id = id;
+            putCached(peer);
+        }
+    }
 
+    private Peer getCached(String name) {
+        synchronized (cache) {
+            return cache.get(name);
+        }
+    }
+
+    private void putCached(Peer peer) {
+        Peer cached = new Peer();
+        cached.id = peer.id;
+        cached.name = peer.name;
+        cached.timestamp = peer.timestamp;
+        cached.latitude = peer.latitude;
+        cached.longitude = peer.longitude;
+        synchronized (cache) {
+            cache.put(peer.name, cached);
+        }
+    }
+
+    /*
+     * Is the new metadata for a peer different enough from that in the database to update?
+     */
+    private static boolean isChanged(Peer cached, Peer peer) {
+        if (peer.timestamp != null && (cached.timestamp == null ||
+                Math.abs(peer.timestamp.getTime() - cached.timestamp.getTime()) >= TIMESTAMP_THRESHOLD)) {
+            return true;
+        }
+        return isMoved(cached.latitude, peer.latitude) || isMoved(cached.longitude, peer.longitude);
+    }
+
+    private static boolean isMoved(Double before, Double after) {
+        if (before == null || after == null) {
+            return before != after;
+        }
+        return Math.abs(after - before) >= LOCATION_THRESHOLD;
+    }
+
+    /**
+     * Forget a cached peer, e.g. if the transaction that wrote it is rolled back.
+     * @param name
+     */
+    public void invalidateCache(String name) {
+        synchronized (cache) {
+            cache.remove(name);
+        }
+    }
+
+    /**
+     * Forget all cached peers, e.g. after a failed transaction, or if peers are deleted.
+     */
+    public void invalidateCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Hit rate of the peer cache, for diagnostics.
+     * @return
+     */
+    public String getCacheStats() {
+        long hits = cacheHits.get();
+        long misses = cacheMisses.get();
+        long lookups = hits + misses;
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return String.format(Locale.US, "peer cache: size=%d hits=%d misses=%d hit rate=%.1f%% skipped updates=%d",
+                size, hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, skippedUpdates.get());
     }
 }
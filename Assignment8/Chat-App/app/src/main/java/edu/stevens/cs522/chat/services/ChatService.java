@@ -30,6 +30,9 @@ import edu.stevens.cs522.base.IDatagramConnection;
 import edu.stevens.cs522.base.InetAddressUtils;
 import edu.stevens.cs522.chat.R;
 import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.databases.ChatroomDao;
+import edu.stevens.cs522.chat.databases.MessageDao;
+import edu.stevens.cs522.chat.databases.PeerDao;
 import edu.stevens.cs522.chat.entities.Chatroom;
 import edu.stevens.cs522.chat.entities.DateConverter;
 import edu.stevens.cs522.chat.entities.Message;
@@ -239,6 +242,25 @@ public class ChatService extends Service implements IChatService {
         }
     }
 
+    /*
+     * Store a received message, with its sender and chatroom, in one transaction.  If that
+     * fails, the transaction is rolled back, but PeerDao may still have the sender cached
+     * as stored, so the peer cache is cleared before the failure is passed on.
+     */
+    static void store(ChatDatabase chatDatabase, Peer peer, Message message, Chatroom chatroom) {
+        PeerDao peerDao = chatDatabase.peerDao();
+        try {
+            chatDatabase.runInTransaction(() -> {
+                peerDao.upsert(peer);
+                chatDatabase.messageDao().persist(message);
+                chatDatabase.chatroomDao().insert(chatroom);
+            });
+        } catch (RuntimeException e) {
+            peerDao.invalidateCache();
+            throw e;
+        }
+    }
+
     private final class ReceiverThread implements Runnable {
 
         @Override
@@ -331,9 +353,7 @@ public class ChatService extends Service implements IChatService {
                     /*
                      * TODO upsert chatroom and peer, and insert message into the database
                      */
-                    chatDatabase.peerDao().upsert(peer);
-                    chatDatabase.messageDao().persist(message);
-                    chatDatabase.chatroomDao().insert(chatroom);
+                    store(chatDatabase, peer, message, chatroom);
 
 
                 } catch (Exception e) {
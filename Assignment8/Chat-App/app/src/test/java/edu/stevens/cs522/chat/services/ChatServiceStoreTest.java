@@ -0,0 +1,212 @@
+package edu.stevens.cs522.chat.services;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.DatabaseConfiguration;
+import androidx.room.InvalidationTracker;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stevens.cs522.chat.databases.ChatDatabase;
+import edu.stevens.cs522.chat.databases.ChatroomDao;
+import edu.stevens.cs522.chat.databases.MessageDao;
+import edu.stevens.cs522.chat.databases.PeerDao;
+import edu.stevens.cs522.chat.entities.Chatroom;
+import edu.stevens.cs522.chat.entities.Message;
+import edu.stevens.cs522.chat.entities.Peer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Storing a received message in ChatService: the sender, message and chatroom are stored in one
+ * transaction, so when storing the message fails the sender is not stored either.  PeerDao may
+ * still have the sender cached, so it is looked up (and inserted) again for the next message.
+ */
+public class ChatServiceStoreTest {
+
+    private static final String SENDER = "peer-0";
+
+    /*
+     * The peer table, which a transaction that fails restores to what it was before.
+     */
+    private final Map<String, Long> peers = new HashMap<>();
+
+    private int lookups;
+
+    private RuntimeException failure;
+
+    /*
+     * Only counts the lookups that reach the database, the peer cache is the one in PeerDao.
+     */
+    private class FakePeerDao extends PeerDao {
+
+        long nextId = 1;
+
+        @Override
+        public LiveData<List<Peer>> fetchAllPeers() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected long getPeerId(String name) {
+            lookups++;
+            Long id = peers.get(name);
+            return id == null ? 0 : id;
+        }
+
+        @Override
+        public long insert(Peer peer) {
+            long id = nextId++;
+            peers.put(peer.name, id);
+            return id;
+        }
+
+        @Override
+        protected int update(Peer peer) {
+            return peers.containsKey(peer.name) ? 1 : 0;
+        }
+    }
+
+    private class FakeMessageDao implements MessageDao {
+
+        @Override
+        public LiveData<List<Message>> fetchAllMessages(String chatroom) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public LiveData<List<Message>> fetchMessagesFromPeer(String peerName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void persist(Message message) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (!peers.containsKey(message.sender)) {
+                throw new IllegalStateException("FOREIGN KEY constraint failed");
+            }
+        }
+    }
+
+    private static class FakeChatroomDao extends ChatroomDao {
+
+        @Override
+        public LiveData<List<Chatroom>> fetchAllChatrooms() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void insert(Chatroom chatroom) {
+        }
+    }
+
+    private class FakeChatDatabase extends ChatDatabase {
+
+        private final PeerDao peerDao = new FakePeerDao();
+
+        private final MessageDao messageDao = new FakeMessageDao();
+
+        private final ChatroomDao chatroomDao = new FakeChatroomDao();
+
+        @Override
+        public PeerDao peerDao() {
+            return peerDao;
+        }
+
+        @Override
+        public ChatroomDao chatroomDao() {
+            return chatroomDao;
+        }
+
+        @Override
+        public MessageDao messageDao() {
+            return messageDao;
+        }
+
+        @Override
+        public void runInTransaction(Runnable body) {
+            Map<String, Long> before = new HashMap<>(peers);
+            try {
+                body.run();
+            } catch (RuntimeException e) {
+                peers.clear();
+                peers.putAll(before);
+                throw e;
+            }
+        }
+
+        @Override
+        protected SupportSQLiteOpenHelper createOpenHelper(DatabaseConfiguration config) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected InvalidationTracker createInvalidationTracker() {
+            return null;
+        }
+
+        @Override
+        public void clearAllTables() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final ChatDatabase chatDatabase = new FakeChatDatabase();
+
+    private void receive() {
+        Date now = new Date(1_600_000_000_000L);
+
+        Peer peer = new Peer();
+        peer.name = SENDER;
+        peer.timestamp = now;
+
+        Message message = new Message();
+        message.sender = SENDER;
+        message.chatroom = "_default";
+        message.messageText = "Hello";
+        message.timestamp = now;
+
+        Chatroom chatroom = new Chatroom();
+        chatroom.name = message.chatroom;
+
+        ChatService.store(chatDatabase, peer, message, chatroom);
+    }
+
+    @Test
+    public void storedSenderStaysCached() {
+        receive();
+        receive();
+        assertEquals(1, lookups);
+    }
+
+    @Test
+    public void failedStoreDropsCachedSender() {
+        // The first message from the sender fails, so inserting the sender is rolled back
+        failure = new IllegalStateException("disk I/O error");
+        try {
+            receive();
+            fail("Expected the failure to be passed on");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertTrue(peers.isEmpty());
+        assertEquals(1, lookups);
+
+        // Had the sender stayed cached, it would not be inserted again, and this would fail
+        failure = null;
+        receive();
+        assertEquals(2, lookups);
+        assertTrue(peers.containsKey(SENDER));
+    }
+
+}